@@ -3,9 +3,21 @@ package jminor;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
+import org.apache.commons.configuration2.Configuration;
+
+import jminor.JmStore.JmErrorStore;
+import pexyn.MatchGoal;
 import pexyn.planning.TR;
+import pexyn.planning.Transition;
 
 /**
  * A transition relation for basic (3-address code) statements.
@@ -18,14 +30,61 @@ public class BasicJminorTR implements TR<JmStore, Stmt> {
 
 	protected final JminorSemantics semantics;
 
+	/**
+	 * A pattern database shared by all searches over this transition relation,
+	 * or null if pattern databases are disabled.
+	 */
+	protected final ShapePatternDatabase patternDatabase;
+
+	/**
+	 * Indicates whether searches for goal stores only try the statements that
+	 * are relevant for the goal (see
+	 * {@link JminorSemantics#goalRelevantActions(JmStore)}).
+	 */
+	protected final boolean pruneIrrelevantActions;
+
 	public BasicJminorTR(JminorSemantics semantics) {
 		this.semantics = semantics;
+		this.patternDatabase = null;
+		this.pruneIrrelevantActions = false;
+	}
+
+	/**
+	 * Constructs a transition relation whose goal-directed searches are
+	 * configured by the 'jminor.patternDatabase*' and 'jminor.relevantActions'
+	 * keys.
+	 */
+	public BasicJminorTR(JminorSemantics semantics, Configuration config) {
+		this.semantics = semantics;
+		this.pruneIrrelevantActions = config.getBoolean("jminor.relevantActions", true);
+		if (config.getBoolean("jminor.patternDatabase", true)) {
+			this.patternDatabase = new ShapePatternDatabase(semantics,
+					config.getInt("jminor.patternDatabase.maxEntries", 1000000),
+					config.getLong("jminor.patternDatabase.maxBuildMillis", 2000));
+		} else {
+			this.patternDatabase = null;
+		}
+	}
+
+	/**
+	 * Returns a description of the outcome of building the pattern database, if
+	 * it is enabled and was built by a search.
+	 */
+	public Optional<String> patternDatabaseStatus() {
+		return patternDatabase != null ? Optional.ofNullable(patternDatabase.status()) : Optional.empty();
 	}
 
 	@Override
 	public Collection<Stmt> enabledActions(JmStore store) {
-		Collection<Stmt> result = new ArrayList<>(semantics.stmts.size());
-		for (var stmt : semantics.stmts) {
+		return enabledActions(store, semantics.stmts);
+	}
+
+	/**
+	 * Returns the given statements that are enabled for the given store.
+	 */
+	protected static Collection<Stmt> enabledActions(JmStore store, Collection<Stmt> stmts) {
+		Collection<Stmt> result = new ArrayList<>(stmts.size());
+		for (var stmt : stmts) {
 			if (stmt.enabled(store)) {
 				result.add(stmt);
 			}
@@ -38,9 +97,290 @@ public class BasicJminorTR implements TR<JmStore, Stmt> {
 		return 1;
 	}
 
+	@Override
+	public Collection<Stmt> candidateActions(JmStore store) {
+		return semantics.stmts;
+	}
+
+	@Override
+	public Collection<Transition<JmStore, Stmt>> transitions(JmStore store, Collection<Stmt> actions) {
+		return successors(store, actions);
+	}
+
+	@Override
+	public Collection<Transition<JmStore, Stmt>> successors(JmStore store) {
+		return successors(store, semantics.stmts);
+	}
+
+	@Override
+	public Iterator<Transition<JmStore, Stmt>> successorsIterator(JmStore store) {
+		return successorsIterator(store, semantics.stmts);
+	}
+
+	/**
+	 * Returns the transitions of the given statements from the given store.
+	 * Each statement is interpreted once, both to check whether it is enabled
+	 * and to obtain the resulting store.
+	 */
+	protected static Collection<Transition<JmStore, Stmt>> successors(JmStore store, Collection<Stmt> stmts) {
+		var result = new ArrayList<Transition<JmStore, Stmt>>(stmts.size());
+		successorsIterator(store, stmts).forEachRemaining(result::add);
+		return result;
+	}
+
+	/**
+	 * Returns an iterator of the transitions of the given statements from the
+	 * given store, which interprets each statement when the iteration reaches
+	 * it.
+	 */
+	protected static Iterator<Transition<JmStore, Stmt>> successorsIterator(JmStore store, Collection<Stmt> stmts) {
+		var stmtIter = stmts.iterator();
+		return new Iterator<>() {
+			private Transition<JmStore, Stmt> next = null;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && stmtIter.hasNext()) {
+					var stmt = stmtIter.next();
+					var interpreter = JminorInterpreter.local();
+					JmStore result = interpreter.run(stmt, store, interpreter.guessMaxSteps(stmt, store)).get();
+					if (!(result instanceof JmErrorStore)) {
+						next = new Transition<>(stmt, result, 1);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public Transition<JmStore, Stmt> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				var result = next;
+				next = null;
+				return result;
+			}
+		};
+	}
+
 	@Override
 	public Collection<JmStore> apply(JmStore store, Stmt stmt) {
-		JmStore result = JminorInterpreter.v.run(stmt, store, JminorInterpreter.v.guessMaxSteps(stmt, store)).get();
+		var interpreter = JminorInterpreter.local();
+		JmStore result = interpreter.run(stmt, store, interpreter.guessMaxSteps(stmt, store)).get();
 		return List.of(result);
 	}
+
+	@Override
+	public long fingerprint(JmStore store, long seed) {
+		return store.fingerprint(seed);
+	}
+
+	/**
+	 * Returns a transition relation with a goal-aware heuristic when the goal is
+	 * given by a goal store, and this transition relation otherwise.
+	 */
+	@Override
+	public TR<JmStore, Stmt> forGoal(Predicate<JmStore> goalTest) {
+		if (goalTest instanceof MatchGoal) {
+			var goal = (JmStore) ((MatchGoal<?>) goalTest).goal;
+			return new GoalDirectedTR(goal);
+		}
+		return this;
+	}
+
+	/**
+	 * Returns an upper bound on the number of variables and fields that the given
+	 * statement can change, or {@link Integer#MAX_VALUE} if there is no such
+	 * bound.
+	 */
+	public static int maxAssignedCells(Stmt stmt) {
+		if (stmt instanceof AssignStmt) {
+			return 1;
+		} else if (stmt instanceof ParallelAssign) {
+			return ((ExprList) ((ParallelAssign) stmt).lvals()).size();
+		} else if (stmt instanceof SeqStmt) {
+			long result = 0;
+			for (var sub : ((SeqStmt) stmt).getArgs()) {
+				result += maxAssignedCells((Stmt) sub);
+			}
+			return (int) Math.min(result, Integer.MAX_VALUE);
+		} else if (stmt instanceof IfStmt) {
+			var ifStmt = (IfStmt) stmt;
+			return Math.max(maxAssignedCells((Stmt) ifStmt.getThenNode()),
+					maxAssignedCells((Stmt) ifStmt.getElseNode()));
+		} else if (stmt instanceof WhileStmt) {
+			return Integer.MAX_VALUE;
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Checks whether a value of the given store may correspond to a value of a
+	 * goal store, given that allocatable objects are compared up to renaming
+	 * when the store is compared up to renaming (see
+	 * {@link JmStore#canonicalEquality()}).
+	 */
+	public static boolean sameUpToRenaming(JmStore store, Val storeVal, Val goalVal) {
+		if (store.canonicalEquality() && goalVal instanceof Obj && store.isAllocatable((Obj) goalVal)) {
+			return storeVal instanceof Obj && store.isAllocatable((Obj) storeVal);
+		}
+		return storeVal.equals(goalVal);
+	}
+
+	/**
+	 * A transition relation specialized for reaching stores that match a given
+	 * goal store.<br>
+	 * The heuristic counts the variables and fields of the goal store that have
+	 * different values in a given store and divides it by the maximal number of
+	 * variables and fields that a single statement can change. Since each
+	 * transition decreases this estimate by at most 1, the heuristic is
+	 * admissible and consistent. When a pattern database is available, the
+	 * heuristic is the maximum of both estimates.<br>
+	 * When irrelevant actions are pruned, only the statements relevant for the
+	 * goal are tried, and the bound on changed cells is taken over them.
+	 * 
+	 * @author romanm
+	 */
+	protected class GoalDirectedTR implements TR<JmStore, Stmt> {
+		protected final JmStore goal;
+
+		/**
+		 * The statements that are tried by searches for the goal.
+		 */
+		protected final Collection<Stmt> stmts;
+
+		/**
+		 * The statements that are tried by searches for the goal, or null if all
+		 * statements are tried.
+		 */
+		private final Set<Stmt> stmtSet;
+
+		/**
+		 * The maximal number of cells that a single enabled statement may change.
+		 */
+		protected final int maxCellsPerStmt;
+
+		/**
+		 * The distance table of the goal, or null if it is unavailable.
+		 */
+		protected final byte[] patternDistances;
+
+		public GoalDirectedTR(JmStore goal) {
+			this.goal = goal;
+			this.patternDistances = patternDatabase != null ? patternDatabase.distances(goal) : null;
+			if (pruneIrrelevantActions) {
+				this.stmts = semantics.goalRelevantActions(goal);
+				this.stmtSet = Collections.newSetFromMap(new IdentityHashMap<>());
+				this.stmtSet.addAll(stmts);
+			} else {
+				this.stmts = semantics.stmts;
+				this.stmtSet = null;
+			}
+			int max = 1;
+			for (var stmt : stmts) {
+				max = Math.max(max, maxAssignedCells(stmt));
+			}
+			this.maxCellsPerStmt = max;
+		}
+
+		@Override
+		public Collection<Stmt> enabledActions(JmStore store) {
+			return BasicJminorTR.enabledActions(store, stmts);
+		}
+
+		@Override
+		public Collection<Transition<JmStore, Stmt>> successors(JmStore store) {
+			return BasicJminorTR.successors(store, stmts);
+		}
+
+		@Override
+		public Iterator<Transition<JmStore, Stmt>> successorsIterator(JmStore store) {
+			return BasicJminorTR.successorsIterator(store, stmts);
+		}
+
+		@Override
+		public Collection<Stmt> candidateActions(JmStore store) {
+			return stmts;
+		}
+
+		@Override
+		public Collection<Transition<JmStore, Stmt>> transitions(JmStore store, Collection<Stmt> actions) {
+			return BasicJminorTR.successors(store, actions);
+		}
+
+		@Override
+		public Collection<Stmt> relevantActions(JmStore store, Collection<Stmt> enabled) {
+			if (stmtSet == null) {
+				return enabled;
+			}
+			var result = new ArrayList<Stmt>(enabled.size());
+			for (var stmt : enabled) {
+				if (stmtSet.contains(stmt)) {
+					result.add(stmt);
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public float transitionCost(JmStore src, Stmt action, JmStore dst) {
+			return BasicJminorTR.this.transitionCost(src, action, dst);
+		}
+
+		@Override
+		public Collection<JmStore> apply(JmStore store, Stmt stmt) {
+			return BasicJminorTR.this.apply(store, stmt);
+		}
+
+		@Override
+		public float estimateDistToGoal(JmStore store) {
+			if (store instanceof JmErrorStore) {
+				// No goal is reachable from an error store.
+				return MAX_COST;
+			}
+			float patternEstimate = patternDistances != null ? patternDatabase.estimate(patternDistances, store) : 0;
+			if (maxCellsPerStmt == Integer.MAX_VALUE) {
+				return patternEstimate;
+			}
+			int differing = 0;
+			for (Map.Entry<Var, Val> entry : goal.getEnvMap().entrySet()) {
+				Var var = entry.getKey();
+				if (!store.isInitialized(var) || !sameUpToRenaming(store, store.eval(var), entry.getValue())) {
+					++differing;
+				}
+			}
+			for (Obj obj : goal.getObjects()) {
+				if (store.canonicalEquality() && store.isAllocatable(obj)) {
+					// The corresponding object of the store is unknown.
+					continue;
+				}
+				for (Map.Entry<Field, Val> entry : goal.geFields(obj).entrySet()) {
+					Field field = entry.getKey();
+					if (!store.isInitialized(obj, field) || !sameUpToRenaming(store, store.eval(obj, field), entry.getValue())) {
+						++differing;
+					}
+				}
+			}
+			return Math.max(patternEstimate, (differing + maxCellsPerStmt - 1) / maxCellsPerStmt);
+		}
+
+		@Override
+		public long fingerprint(JmStore store, long seed) {
+			return BasicJminorTR.this.fingerprint(store, seed);
+		}
+
+		/**
+		 * Returns the number of statements irrelevant for the goal.
+		 */
+		@Override
+		public int prunedActions() {
+			return semantics.stmts.size() - stmts.size();
+		}
+
+		@Override
+		public TR<JmStore, Stmt> forGoal(Predicate<JmStore> goalTest) {
+			return BasicJminorTR.this.forGoal(goalTest);
+		}
+	}
 }
\ No newline at end of file
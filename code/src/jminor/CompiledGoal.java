@@ -0,0 +1,168 @@
+package jminor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A goal test for stores that match a given partial goal store (see
+ * {@link JminorSemantics#match}), compiled once into a flat array of checks,
+ * each comparing a single variable or field to its expected value. The checks
+ * are evaluated without allocating, and are periodically reordered so that
+ * the ones that fail most often are evaluated first.<br>
+ * A store that fails the test remembers the failed check (its witness), and a
+ * store derived from it by assignments inherits the witness, unless the
+ * assignments change the variable or field of the check (see
+ * {@link JmStore#assign}). Testing a store whose witness is inherited takes
+ * constant time, so when a single cell changed since the parent store, only
+ * the checks of that cell are effectively re-tested.
+ *
+ * @author romanm
+ */
+public class CompiledGoal implements Predicate<JmStore> {
+	/**
+	 * The number of full evaluations between reorderings of the checks.
+	 */
+	private static final int REORDER_PERIOD = 256;
+
+	/**
+	 * A comparison of a single variable or field of a store to its value in the
+	 * goal store.
+	 *
+	 * @author romanm
+	 */
+	public static class Check {
+		public final CompiledGoal goal;
+
+		/**
+		 * The checked variable, or null for a field check.
+		 */
+		public final Var var;
+
+		/**
+		 * The object of a field check, or null for a variable check.
+		 */
+		public final Obj obj;
+		public final Field field;
+		public final Val expected;
+
+		/**
+		 * The number of stores that failed this check. Updated without
+		 * synchronization, so it is only an estimate under concurrent searches.
+		 */
+		private int failures = 0;
+
+		private Check(CompiledGoal goal, Var var, Obj obj, Field field, Val expected) {
+			this.goal = goal;
+			this.var = var;
+			this.obj = obj;
+			this.field = field;
+			this.expected = expected;
+		}
+
+		public boolean holds(JmStore store) {
+			Val val = var != null ? store.eval(var) : store.eval(obj, field);
+			return val != null && val.equals(expected);
+		}
+
+		/**
+		 * Tests whether assigning the given variable may change the outcome of
+		 * this check.
+		 */
+		public boolean reads(Var lvar) {
+			return var != null && var.equals(lvar);
+		}
+
+		/**
+		 * Tests whether assigning the given field of the given object may change
+		 * the outcome of this check.
+		 */
+		public boolean reads(Obj lobj, Field lfield) {
+			return var == null && obj.equals(lobj) && field.equals(lfield);
+		}
+
+		@Override
+		public String toString() {
+			return (var != null ? var.toString() : obj + "." + field) + "==" + expected;
+		}
+	}
+
+	/**
+	 * The checks, in the order of evaluation. Replaced, rather than updated,
+	 * when reordered, since the goal may be tested by concurrent searches.
+	 */
+	private volatile Check[] checks;
+
+	/**
+	 * The number of full evaluations since the last reordering, updated without
+	 * synchronization.
+	 */
+	private int evaluations = 0;
+
+	/**
+	 * Compiles a goal test for the given goal store. Variables are checked
+	 * before fields, as they are cheaper to evaluate, until failure counts are
+	 * available.
+	 */
+	public CompiledGoal(JmStore goal) {
+		var result = new ArrayList<Check>();
+		for (Map.Entry<Var, Val> entry : goal.getEnvMap().entrySet()) {
+			result.add(new Check(this, entry.getKey(), null, null, entry.getValue()));
+		}
+		for (Obj obj : goal.getObjects()) {
+			for (Map.Entry<Field, Val> entry : goal.geFields(obj).entrySet()) {
+				result.add(new Check(this, null, obj, entry.getKey(), entry.getValue()));
+			}
+		}
+		this.checks = result.toArray(new Check[result.size()]);
+	}
+
+	@Override
+	public boolean test(JmStore store) {
+		Check witness = store.goalWitness;
+		if (witness != null && witness.goal == this) {
+			return false;
+		}
+		Check[] order = checks;
+		boolean result = true;
+		for (Check check : order) {
+			if (!check.holds(store)) {
+				++check.failures;
+				store.goalWitness = check;
+				result = false;
+				break;
+			}
+		}
+		if (++evaluations >= REORDER_PERIOD) {
+			evaluations = 0;
+			reorder(order);
+		}
+		return result;
+	}
+
+	/**
+	 * Orders the checks by decreasing failure counts, keeping the current order
+	 * among checks with equal counts. The counts are sampled first, since they
+	 * may be updated during the sort.
+	 */
+	private void reorder(Check[] order) {
+		long[] keys = new long[order.length];
+		for (int i = 0; i < order.length; ++i) {
+			keys[i] = ((long) (Integer.MAX_VALUE - order[i].failures) << 32) | i;
+		}
+		Arrays.sort(keys);
+		Check[] result = new Check[order.length];
+		for (int i = 0; i < order.length; ++i) {
+			result[i] = order[(int) keys[i]];
+		}
+		checks = result;
+	}
+
+	/**
+	 * Returns the number of checks.
+	 */
+	public int size() {
+		return checks.length;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,474 @@
+package jminor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * A store laid out as flat arrays, indexed by the dense ids of a
+ * {@link StoreLayout}: the environment holds a cell per variable, and the heap
+ * holds a cell per object and field, each with a bit telling whether it is
+ * initialized. Stores are compared by their arrays, rather than by the hash
+ * codes of their variables, objects, and fields, and hashed like other stores
+ * (see {@link JmStore#zobrist}).<br>
+ * The maps returned by {@link #getEnvMap()} and {@link #geFields(Obj)} are
+ * built on demand. Dense stores are derived from dense stores only, so all
+ * the stores of a problem should be converted (see
+ * {@link JminorProblem#useDenseStores()}).
+ *
+ * @author romanm
+ */
+public class DenseJmStore extends JmStore {
+	public final StoreLayout layout;
+
+	/**
+	 * The set of allocated objects, as a bitmap over object ids.
+	 */
+	private final long[] objectBits;
+
+	private final int[] envCells;
+	private final long[] envInitialized;
+	private final int[] heapCells;
+	private final long[] heapInitialized;
+
+	/**
+	 * The set of allocated objects, computed on demand.
+	 */
+	private Set<Obj> objectSet = null;
+
+	private DenseJmStore(StoreLayout layout, long[] objectBits, ObjectPool pool, int[] envCells,
+			long[] envInitialized, int[] heapCells, long[] heapInitialized, long zobrist) {
+		super(Set.of(), pool, zobrist);
+		this.layout = layout;
+		this.objectBits = objectBits;
+		this.envCells = envCells;
+		this.envInitialized = envInitialized;
+		this.heapCells = heapCells;
+		this.heapInitialized = heapInitialized;
+	}
+
+	/**
+	 * Returns a dense store equal to the given store, which must not be an error
+	 * store.
+	 */
+	public static DenseJmStore of(StoreLayout layout, JmStore store) {
+		assert !(store instanceof JmErrorStore);
+		if (store instanceof DenseJmStore && ((DenseJmStore) store).layout == layout) {
+			return (DenseJmStore) store;
+		}
+		var objectBits = StoreLayout.newBitmap(layout.objs.length);
+		for (Obj obj : store.getObjects()) {
+			StoreLayout.setBit(objectBits, objId(layout, obj));
+		}
+		var envCells = new int[layout.vars.length];
+		var envInitialized = StoreLayout.newBitmap(envCells.length);
+		for (Map.Entry<Var, Val> entry : store.getEnvMap().entrySet()) {
+			if (entry.getValue() == null) {
+				continue;
+			}
+			int id = layout.varId(entry.getKey());
+			if (id < 0) {
+				throw new IllegalArgumentException("Variable " + entry.getKey() + " is not in the store layout!");
+			}
+			envCells[id] = layout.encode(entry.getValue());
+			StoreLayout.setBit(envInitialized, id);
+		}
+		var heapCells = new int[layout.heapSize()];
+		var heapInitialized = StoreLayout.newBitmap(heapCells.length);
+		for (Obj obj : store.heap.keySet()) {
+			Map<Field, Val> fields = store.heap.get(obj);
+			if (obj == Obj.NULL || fields == null) {
+				continue;
+			}
+			for (Map.Entry<Field, Val> entry : fields.entrySet()) {
+				if (entry.getValue() == null) {
+					continue;
+				}
+				int cell = layout.cell(obj, entry.getKey());
+				if (cell < 0) {
+					throw new IllegalArgumentException(
+							"Field " + obj + "." + entry.getKey() + " is not in the store layout!");
+				}
+				heapCells[cell] = layout.encode(entry.getValue());
+				StoreLayout.setBit(heapInitialized, cell);
+			}
+		}
+		return new DenseJmStore(layout, objectBits, store.pool, envCells, envInitialized, heapCells,
+				heapInitialized, store.zobrist);
+	}
+
+	private static int objId(StoreLayout layout, Obj obj) {
+		int result = layout.objId(obj);
+		if (result < 0) {
+			throw new IllegalArgumentException("Object " + obj + " is not in the store layout!");
+		}
+		return result;
+	}
+
+	@Override
+	public Map<Var, Val> getEnvMap() {
+		var result = new LinkedHashMap<Var, Val>();
+		for (int i = StoreLayout.nextSetBit(envInitialized, 0); i >= 0; i = StoreLayout.nextSetBit(envInitialized,
+				i + 1)) {
+			result.put(layout.vars[i], layout.decode(layout.varKinds[i], envCells[i]));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	@Override
+	public Map<Field, Val> geFields(Obj obj) {
+		assert getObjects().contains(obj);
+		var result = fieldMap(obj);
+		return result != null ? result : Collections.emptyMap();
+	}
+
+	@Override
+	protected Map<Field, Val> fieldMap(Obj obj) {
+		int objId = layout.objId(obj);
+		if (objId < 0) {
+			return null;
+		}
+		Map<Field, Val> result = null;
+		int base = objId * layout.fields.length;
+		for (int i = 0; i < layout.fields.length; ++i) {
+			if (StoreLayout.testBit(heapInitialized, base + i)) {
+				if (result == null) {
+					result = new LinkedHashMap<>();
+				}
+				result.put(layout.fields[i], layout.decode(layout.fieldKinds[i], heapCells[base + i]));
+			}
+		}
+		return result != null ? Collections.unmodifiableMap(result) : null;
+	}
+
+	@Override
+	public Collection<Obj> getObjects() {
+		var result = objectSet;
+		if (result == null) {
+			result = Collections.unmodifiableSet(new LinkedHashSet<>(layout.objects(objectBits)));
+			objectSet = result;
+		}
+		return result;
+	}
+
+	@Override
+	public boolean isInitialized(Var var) {
+		int id = layout.varId(var);
+		return id >= 0 && StoreLayout.testBit(envInitialized, id);
+	}
+
+	@Override
+	public boolean isInitialized(Object obj, Field field) {
+		int cell = obj instanceof Obj ? layout.cell((Obj) obj, field) : -1;
+		return cell >= 0 && StoreLayout.testBit(heapInitialized, cell);
+	}
+
+	@Override
+	public Val eval(Var var) {
+		int id = layout.varId(var);
+		if (id < 0 || !StoreLayout.testBit(envInitialized, id)) {
+			return null;
+		}
+		return layout.decode(layout.varKinds[id], envCells[id]);
+	}
+
+	@Override
+	public Val eval(Obj obj, Field field) {
+		int cell = layout.cell(obj, field);
+		if (cell < 0 || !StoreLayout.testBit(heapInitialized, cell)) {
+			return null;
+		}
+		return layout.decode(layout.fieldKinds[cell % layout.fields.length], heapCells[cell]);
+	}
+
+	@Override
+	public JmStore assign(Var lvar, Val v) {
+		assert lvar != null && v != null && StoreUtils.typecheck(lvar, v);
+		int id = layout.varId(lvar);
+		if (id < 0) {
+			throw new IllegalArgumentException("Variable " + lvar + " is not in the store layout!");
+		}
+		Val old = eval(lvar);
+		long newZobrist = zobrist ^ (old != null ? zobrist(lvar, old) : 0) ^ zobrist(lvar, v);
+		var newEnvCells = envCells.clone();
+		var newEnvInitialized = envInitialized.clone();
+		newEnvCells[id] = layout.encode(v);
+		StoreLayout.setBit(newEnvInitialized, id);
+		var result = new DenseJmStore(layout, objectBits, pool, newEnvCells, newEnvInitialized, heapCells,
+				heapInitialized, newZobrist);
+		if (goalWitness != null && !goalWitness.reads(lvar)) {
+			result.goalWitness = goalWitness;
+		}
+		result.leakSuspects = suspectsAfter(old, v);
+		return result;
+	}
+
+	@Override
+	public JmStore assign(Obj lobj, Field field, Val v) {
+		assert lobj != null && field != null && v != null;
+		assert StoreUtils.typecheck(field, v);
+		assert StoreUtils.typecheck(field, lobj);
+		int cell = layout.cell(lobj, field);
+		if (cell < 0) {
+			throw new IllegalArgumentException("Field " + lobj + "." + field + " is not in the store layout!");
+		}
+		Val old = eval(lobj, field);
+		long newZobrist = zobrist ^ (old != null ? zobrist(lobj, field, old) : 0) ^ zobrist(lobj, field, v);
+		var newHeapCells = heapCells.clone();
+		var newHeapInitialized = heapInitialized.clone();
+		newHeapCells[cell] = layout.encode(v);
+		StoreLayout.setBit(newHeapInitialized, cell);
+		var result = new DenseJmStore(layout, objectBits, pool, envCells, envInitialized, newHeapCells,
+				newHeapInitialized, newZobrist);
+		if (goalWitness != null && !goalWitness.reads(lobj, field)) {
+			result.goalWitness = goalWitness;
+		}
+		result.leakSuspects = suspectsAfter(old, v);
+		return result;
+	}
+
+	@Override
+	public JmStore clean(Iterable<Var> deadVars) {
+		var newEnvCells = envCells.clone();
+		var newEnvInitialized = envInitialized.clone();
+		long newZobrist = zobrist;
+		for (Var deadVar : deadVars) {
+			int id = layout.varId(deadVar);
+			if (id >= 0 && StoreLayout.testBit(newEnvInitialized, id)) {
+				newZobrist ^= zobrist(deadVar, layout.decode(layout.varKinds[id], newEnvCells[id]));
+				newEnvCells[id] = 0;
+				StoreLayout.clearBit(newEnvInitialized, id);
+			}
+		}
+		var result = new DenseJmStore(layout, objectBits, pool.withoutFreeObjects(), newEnvCells, newEnvInitialized, heapCells,
+				heapInitialized, newZobrist);
+		return result.removeGarbage();
+	}
+
+	@Override
+	protected boolean checkGarbage() {
+		var reachable = reachable();
+		if (Arrays.equals(reachable, objectBits)) {
+			leakSuspects = NO_SUSPECTS;
+			return false;
+		}
+		return StoreLayout.cardinality(objectBits) != StoreLayout.cardinality(reachable);
+	}
+
+	@Override
+	protected boolean hasObject(Obj obj) {
+		int objId = layout.objId(obj);
+		return objId >= 0 && StoreLayout.testBit(objectBits, objId);
+	}
+
+	@Override
+	protected boolean reachableInOneStep(Obj target) {
+		int targetId = layout.objId(target);
+		for (int i = StoreLayout.nextSetBit(envInitialized, 0); i >= 0; i = StoreLayout.nextSetBit(envInitialized,
+				i + 1)) {
+			int objId = envCells[i];
+			if (layout.varKinds[i] != StoreLayout.REF || objId < 0) {
+				continue;
+			}
+			if (objId == targetId) {
+				return true;
+			}
+			int base = objId * layout.fields.length;
+			for (int j = 0; j < layout.fields.length; ++j) {
+				if (layout.fieldKinds[j] == StoreLayout.REF && heapCells[base + j] == targetId
+						&& StoreLayout.testBit(heapInitialized, base + j)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Traverses the whole heap, which takes no allocations besides the
+	 * traversal arrays.
+	 */
+	@Override
+	protected boolean reachesAll(Collection<Obj> targets) {
+		var reachable = reachable();
+		for (Obj target : targets) {
+			if (!StoreLayout.testBit(reachable, layout.objId(target))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the objects reachable from the variables, as a bitmap.
+	 */
+	private long[] reachable() {
+		var result = StoreLayout.newBitmap(layout.objs.length);
+		var stack = new int[layout.objs.length];
+		int top = 0;
+		for (int i = StoreLayout.nextSetBit(envInitialized, 0); i >= 0; i = StoreLayout.nextSetBit(envInitialized,
+				i + 1)) {
+			int objId = envCells[i];
+			if (layout.varKinds[i] == StoreLayout.REF && objId >= 0 && !StoreLayout.testBit(result, objId)) {
+				StoreLayout.setBit(result, objId);
+				stack[top++] = objId;
+			}
+		}
+		while (top > 0) {
+			int base = stack[--top] * layout.fields.length;
+			for (int i = 0; i < layout.fields.length; ++i) {
+				int objId = heapCells[base + i];
+				if (layout.fieldKinds[i] == StoreLayout.REF && objId >= 0
+						&& StoreLayout.testBit(heapInitialized, base + i) && !StoreLayout.testBit(result, objId)) {
+					StoreLayout.setBit(result, objId);
+					stack[top++] = objId;
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	protected JmStore removeGarbage() {
+		var reachable = reachable();
+		var newHeapCells = heapCells.clone();
+		var newHeapInitialized = heapInitialized.clone();
+		long newZobrist = zobrist;
+		for (int objId = 0; objId < layout.objs.length; ++objId) {
+			Obj obj = layout.objs[objId];
+			boolean wasAllocated = StoreLayout.testBit(objectBits, objId);
+			if (StoreLayout.testBit(reachable, objId)) {
+				if (!wasAllocated) {
+					newZobrist ^= zobrist(obj);
+				}
+				continue;
+			}
+			if (wasAllocated) {
+				newZobrist ^= zobrist(obj);
+			}
+			int base = objId * layout.fields.length;
+			for (int i = 0; i < layout.fields.length; ++i) {
+				if (StoreLayout.testBit(newHeapInitialized, base + i)) {
+					newZobrist ^= zobrist(obj, layout.fields[i],
+							layout.decode(layout.fieldKinds[i], newHeapCells[base + i]));
+					newHeapCells[base + i] = 0;
+					StoreLayout.clearBit(newHeapInitialized, base + i);
+				}
+			}
+		}
+		var result = new DenseJmStore(layout, reachable, pool, envCells, envInitialized, newHeapCells,
+				newHeapInitialized, newZobrist);
+		// Collected objects have uninitialized fields, which fail any check.
+		result.goalWitness = goalWitness;
+		result.leakSuspects = NO_SUSPECTS;
+		return result;
+	}
+
+	/**
+	 * Returns this store, which has no field maps.
+	 */
+	@Override
+	JmStore internFields(UnaryOperator<PersistentMap<Field, Val>> interner) {
+		return this;
+	}
+
+	/**
+	 * Compares dense stores by their arrays, and other stores by their
+	 * environments and heaps. Heap entries without fields are ignored.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (pool.canonicalEquality || !(o instanceof JmStore) || o instanceof JmErrorStore) {
+			return super.equals(o);
+		}
+		if (o instanceof DenseJmStore && ((DenseJmStore) o).layout == layout) {
+			var other = (DenseJmStore) o;
+			if (zobrist != other.zobrist) {
+				return false;
+			}
+			return Arrays.equals(envInitialized, other.envInitialized) && Arrays.equals(envCells, other.envCells)
+					&& Arrays.equals(heapInitialized, other.heapInitialized)
+					&& Arrays.equals(heapCells, other.heapCells) && Arrays.equals(objectBits, other.objectBits)
+					&& equalFreeObjects(other);
+		}
+		var other = (JmStore) o;
+		return zobrist == other.zobrist && getObjects().equals(new HashSet<>(other.getObjects())) && equalFreeObjects(other)
+				&& equalEnv(other) && equalHeap(other);
+	}
+
+	@Override
+	public JmStore withPool(ObjectPool pool) {
+		var result = new DenseJmStore(layout, objectBits, pool, envCells, envInitialized, heapCells, heapInitialized,
+				zobrist);
+		result.leakSuspects = leakSuspects;
+		return result;
+	}
+
+	@Override
+	public boolean equalEnv(JmStore o) {
+		if (o instanceof DenseJmStore && ((DenseJmStore) o).layout == layout) {
+			var other = (DenseJmStore) o;
+			return Arrays.equals(envInitialized, other.envInitialized) && Arrays.equals(envCells, other.envCells);
+		}
+		return getEnvMap().equals(o.getEnvMap());
+	}
+
+	@Override
+	public boolean equalHeap(JmStore o) {
+		if (o instanceof DenseJmStore && ((DenseJmStore) o).layout == layout) {
+			var other = (DenseJmStore) o;
+			return Arrays.equals(heapInitialized, other.heapInitialized)
+					&& Arrays.equals(heapCells, other.heapCells);
+		}
+		var heapObjects = new HashSet<Obj>(layout.objects(objectBits));
+		for (int cell = StoreLayout.nextSetBit(heapInitialized, 0); cell >= 0; cell = StoreLayout
+				.nextSetBit(heapInitialized, cell + 1)) {
+			heapObjects.add(layout.objs[cell / layout.fields.length]);
+		}
+		heapObjects.addAll(o.heap.keySet());
+		heapObjects.remove(Obj.NULL);
+		for (Obj obj : heapObjects) {
+			var fields = fieldMap(obj);
+			var otherFields = o.fieldMap(obj);
+			if (!(fields == null ? Collections.emptyMap() : fields)
+					.equals(otherFields == null ? Collections.emptyMap() : otherFields)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public long fingerprint(long seed) {
+		if (pool.canonicalEquality) {
+			return super.fingerprint(seed);
+		}
+		long result = mix(seed);
+		result = fingerprint(result, objectBits);
+		result = fingerprint(result, envInitialized);
+		result = fingerprint(result, heapInitialized);
+		for (int cell : envCells) {
+			result = mix(result ^ cell);
+		}
+		for (int cell : heapCells) {
+			result = mix(result ^ cell);
+		}
+		return result;
+	}
+
+	private static long fingerprint(long result, long[] bitmap) {
+		for (long bits : bitmap) {
+			result = mix(result ^ bits);
+		}
+		return result;
+	}
+}
\ No newline at end of file
@@ -1,12 +1,18 @@
 package jminor;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import org.stringtemplate.v4.ST;
 
@@ -29,18 +35,71 @@ public class JmStore implements Store {
 	 */
 	protected final Set<Obj> objects;
 
-	protected final Set<Obj> freeObjects;
+	/**
+	 * The free objects, shared by the stores derived from the same example,
+	 * which also determine how stores are compared.
+	 */
+	protected final ObjectPool pool;
 
 	/**
-	 * A map assigning variables to values.
+	 * A map assigning variables to values. Shared with the stores that differ
+	 * from this store only in their heaps, and structurally shared with the
+	 * other stores derived from this one.
 	 */
-	protected final Map<Var, Val> env;
+	protected final PersistentMap<Var, Val> env;
 
 	/**
 	 * A map assigning each object and reference field to the object it references
-	 * or null.
+	 * or null. Shared like the environment.
+	 */
+	protected final PersistentMap<Obj, PersistentMap<Field, Val>> heap;
+
+	/**
+	 * Marks uninitialized fields in canonical forms.
+	 */
+	private static final Object UNINITIALIZED = new Object();
+
+	/**
+	 * The canonical form of this store, computed on demand.
+	 */
+	private List<Object> canonicalForm = null;
+
+	/**
+	 * A check of a {@link CompiledGoal} that this store is known to fail, or
+	 * null. Inherited by the stores obtained by assignments that do not affect
+	 * the check. Written without synchronization, which is safe since any
+	 * witness written is valid for this store.
+	 */
+	CompiledGoal.Check goalWitness = null;
+
+	/**
+	 * The objects whose incoming references were overwritten since the nearest
+	 * ancestor of this store (via assignments) whose reachable objects are
+	 * exactly its allocated objects, or null if there is no such ancestor or
+	 * the assignments referenced objects that are not allocated. If an object
+	 * becomes unreachable then so does one of these objects, which lets
+	 * {@link #containsGarbage()} avoid traversing the heap. Written without
+	 * synchronization, like {@link #goalWitness}.
 	 */
-	protected final Map<Obj, Map<Field, Val>> heap;
+	Obj[] leakSuspects = null;
+
+	static final Obj[] NO_SUSPECTS = new Obj[0];
+
+	/**
+	 * The maximal number of suspects tracked before resorting to a traversal of
+	 * the whole heap.
+	 */
+	private static final int MAX_SUSPECTS = 8;
+
+	/**
+	 * A Zobrist-style hash of the contents of this store: the exclusive or of
+	 * the hashes of its allocated objects and of its initialized variables and
+	 * fields, each hashed together with its (non-null) value. Assignments update it by
+	 * removing the hash of the old value of the assigned cell and adding the
+	 * hash of the new one. Stores with equal contents have equal hashes,
+	 * regardless of their representations.
+	 */
+	protected final long zobrist;
 
 	public static JmStore error(Object... description) {
 		return new JmErrorStore(description);
@@ -51,10 +110,10 @@ public class JmStore implements Store {
 	 */
 	public JmStore() {
 		this.objects = new HashSet<>();
-		this.freeObjects = Set.of();
-		this.env = new HashMap<>();
-		this.heap = new HashMap<>();
-		this.heap.put(Obj.NULL, Collections.emptyMap());
+		this.pool = new ObjectPool();
+		this.env = PersistentMap.empty();
+		this.heap = PersistentMap.<Obj, PersistentMap<Field, Val>>empty().plus(Obj.NULL, PersistentMap.empty());
+		this.zobrist = 0;
 	}
 
 	/**
@@ -62,28 +121,109 @@ public class JmStore implements Store {
 	 * 
 	 * @param objects
 	 *            The set of allocated objects.
-	 * @param freeObjects
-	 *            The objects that are not currently allocated.
+	 * @param pool
+	 *            The objects that are not currently allocated, which may be
+	 *            shared with other stores.
 	 * @param env
 	 *            An environment mapping variables to fields.
 	 * @param heap
-	 *            A heap mapping objects and fields to other objects.
+	 *            A heap mapping objects and fields to other objects. The
+	 *            environment and heap are copied into persistent maps.
 	 */
-	public JmStore(Set<Obj> objects, Set<Obj> freeObjects, Map<Var, Val> env, Map<Obj, Map<Field, Val>> heap) {
+	public JmStore(Set<Obj> objects, ObjectPool pool, Map<Var, Val> env, Map<Obj, Map<Field, Val>> heap) {
+		this(objects, pool, PersistentMap.copyOf(env), persistentHeap(heap));
+	}
+
+	private JmStore(Set<Obj> objects, ObjectPool pool, PersistentMap<Var, Val> env,
+			PersistentMap<Obj, PersistentMap<Field, Val>> heap) {
+		this(objects, pool, env, heap, zobrist(objects, env, heap));
+	}
+
+	private JmStore(Set<Obj> objects, ObjectPool pool, PersistentMap<Var, Val> env,
+			PersistentMap<Obj, PersistentMap<Field, Val>> heap, long zobrist) {
 		assert objects != null && !objects.contains(Obj.NULL);
-		assert freeObjects != null && !freeObjects.contains(Obj.NULL);
-		assert Collections.disjoint(objects, freeObjects);
+		assert pool != null && pool.disjoint(objects);
 		this.objects = objects;
-		this.freeObjects = freeObjects;
+		this.pool = pool;
 		this.env = env;
 		this.heap = heap;
+		this.zobrist = zobrist;
+	}
+
+	/**
+	 * Constructs a store with an empty environment and heap, for subclasses that
+	 * represent their environments and heaps differently.
+	 * 
+	 * @param zobrist
+	 *            The hash of the contents of the store (see {@link #zobrist}).
+	 */
+	protected JmStore(Set<Obj> objects, ObjectPool pool, long zobrist) {
+		this.objects = objects;
+		this.pool = pool;
+		this.env = PersistentMap.empty();
+		this.heap = PersistentMap.empty();
+		this.zobrist = zobrist;
 	}
 
 	public JmStore(JmStore o) {
 		this.objects = new HashSet<>(o.objects);
-		this.freeObjects = new HashSet<>(o.freeObjects);
-		this.env = new HashMap<>(o.env);
-		this.heap = new HashMap<>(o.heap);
+		this.pool = o.pool.withCanonicalEquality(o.pool.canonicalEquality);
+		this.env = o.env;
+		this.heap = o.heap;
+		this.zobrist = o.zobrist;
+		this.leakSuspects = o.leakSuspects;
+	}
+
+	private static long zobrist(Set<Obj> objects, Map<Var, Val> env, Map<Obj, ? extends Map<Field, Val>> heap) {
+		long result = 0;
+		for (Obj obj : objects) {
+			result ^= zobrist(obj);
+		}
+		for (Map.Entry<Var, Val> entry : env.entrySet()) {
+			if (entry.getValue() != null) {
+				result ^= zobrist(entry.getKey(), entry.getValue());
+			}
+		}
+		for (Map.Entry<Obj, ? extends Map<Field, Val>> objEntry : heap.entrySet()) {
+			if (objEntry.getValue() != null) {
+				for (Map.Entry<Field, Val> entry : objEntry.getValue().entrySet()) {
+					if (entry.getValue() != null) {
+						result ^= zobrist(objEntry.getKey(), entry.getKey(), entry.getValue());
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the contribution of an allocated object to {@link #zobrist}.
+	 */
+	static long zobrist(Obj obj) {
+		return mix(pack(2, obj.hashCode()));
+	}
+
+	/**
+	 * Returns the contribution of an initialized variable to {@link #zobrist}.
+	 */
+	static long zobrist(Var var, Val val) {
+		return mix(mix(pack(1, var.hashCode())) ^ val.hashCode());
+	}
+
+	/**
+	 * Returns the contribution of an initialized field to {@link #zobrist}.
+	 */
+	static long zobrist(Obj obj, Field field, Val val) {
+		return mix(mix(pack(obj.hashCode(), field.hashCode())) ^ val.hashCode());
+	}
+
+	private static PersistentMap<Obj, PersistentMap<Field, Val>> persistentHeap(Map<Obj, Map<Field, Val>> heap) {
+		PersistentMap<Obj, PersistentMap<Field, Val>> result = PersistentMap.empty();
+		for (Map.Entry<Obj, Map<Field, Val>> entry : heap.entrySet()) {
+			var fields = entry.getValue();
+			result = result.plus(entry.getKey(), fields != null ? PersistentMap.copyOf(fields) : null);
+		}
+		return result;
 	}
 
 	public Map<Var, Val> getEnvMap() {
@@ -99,6 +239,14 @@ public class JmStore implements Store {
 		return result;
 	}
 
+	/**
+	 * Returns the fields of the given object, which need not be in the set of
+	 * allocated objects, or null if the heap has no entry for it.
+	 */
+	protected Map<Field, Val> fieldMap(Obj obj) {
+		return heap.get(obj);
+	}
+
 	/**
 	 * @return The set of allocated objects.
 	 */
@@ -108,8 +256,9 @@ public class JmStore implements Store {
 
 	/**
 	 * Compares two stores.<br>
-	 * WARNING: the current implementation does not work correctly when object
-	 * allocation has been used, since that requires an isomorphism check.
+	 * WARNING: unless {@link #canonicalEquality()} holds, stores are compared by
+	 * object identities, so stores whose heaps are isomorphic due to allocating
+	 * different objects are considered different.
 	 */
 	@Override
 	public boolean equals(Object o) {
@@ -118,9 +267,17 @@ public class JmStore implements Store {
 		if (this == o)
 			return true;
 		JmStore other = (JmStore) o;
+		if (pool.canonicalEquality) {
+			return !(other instanceof JmErrorStore) && sameForm(canonicalForm(), other.canonicalForm());
+		}
+		if (zobrist != other.zobrist)
+			return false;
+		if (other instanceof DenseJmStore) {
+			return other.equals(this);
+		}
 		if (!objects.equals(other.objects))
 			return false;
-		if (!freeObjects.equals(other.freeObjects))
+		if (!equalFreeObjects(other))
 			return false;
 		if (!env.equals(other.env))
 			return false;
@@ -129,6 +286,139 @@ public class JmStore implements Store {
 		return true;
 	}
 
+	/**
+	 * Returns a 64-bit hash of this store from a family of hash functions
+	 * indexed by the given seed. Equal stores have equal fingerprints. The
+	 * hashes of the variables, objects, and fields are combined by addition, so
+	 * the result does not depend on the iteration order of the underlying maps.
+	 * The hash of each value is mixed separately from the hash of its variable
+	 * or field, so that values cannot cancel against the names they are
+	 * assigned to. The free objects are ignored, since they are shared by the
+	 * stores of a problem and change when any of them allocates.
+	 */
+	public long fingerprint(long seed) {
+		long result = mix(seed);
+		if (pool.canonicalEquality) {
+			for (var element : canonicalForm()) {
+				result = mix(result ^ element.hashCode());
+			}
+			return result;
+		}
+		for (var entry : env.entrySet()) {
+			result += mix(mix(pack(1, entry.getKey().hashCode())) ^ mix(entry.getValue().hashCode()) ^ seed);
+		}
+		for (var obj : objects) {
+			result += mix(seed ^ pack(2, obj.hashCode()));
+		}
+		for (var objEntry : heap.entrySet()) {
+			if (objEntry.getValue() == null) {
+				continue;
+			}
+			long objHash = mix(pack(4, objEntry.getKey().hashCode()));
+			for (var entry : objEntry.getValue().entrySet()) {
+				long cellHash = mix(objHash ^ mix(pack(5, entry.getKey().hashCode())));
+				result += mix(cellHash ^ mix(entry.getValue().hashCode()) ^ seed);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a description of this store that is equal for two stores exactly
+	 * when they are equal up to a renaming of allocated objects. Allocated
+	 * objects are named by the order in which a breadth-first search reaches
+	 * them, starting from the variables in the order of their names, and
+	 * following the fields of each type in a fixed order, while other objects
+	 * keep their identities. The description consists of the values of the
+	 * variables, followed by the type and field values of each reachable
+	 * object. Unreachable allocated objects are described only by their types,
+	 * and the free objects are ignored, since they are shared by all stores of
+	 * a problem.
+	 */
+	public List<Object> canonicalForm() {
+		if (canonicalForm != null) {
+			return canonicalForm;
+		}
+		var objects = getObjects();
+		var vars = new ArrayList<>(getEnvMap().keySet());
+		vars.sort(Comparator.comparing(var -> var.name));
+		var result = new ArrayList<Object>(vars.size() * 2 + objects.size() * 4);
+		var objToName = new HashMap<Obj, Integer>();
+		var reached = new ArrayList<Obj>();
+		for (var var : vars) {
+			result.add(var);
+			result.add(canonicalVal(eval(var), objToName, reached));
+		}
+		for (int i = 0; i < reached.size(); ++i) {
+			var obj = reached.get(i);
+			result.add(pool.isAllocatable(obj) ? obj.type : obj);
+			var fields = fieldMap(obj);
+			for (var field : obj.type.fields) {
+				var val = fields != null ? fields.get(field) : null;
+				result.add(val != null ? canonicalVal(val, objToName, reached) : UNINITIALIZED);
+			}
+		}
+		if (reached.size() < objects.size()) {
+			var unreachable = new ArrayList<String>();
+			for (var obj : objects) {
+				if (!objToName.containsKey(obj)) {
+					unreachable.add(pool.isAllocatable(obj) ? obj.type.name : obj.toString() + fieldMap(obj));
+				}
+			}
+			Collections.sort(unreachable);
+			result.add(UNINITIALIZED);
+			result.addAll(unreachable);
+		}
+		canonicalForm = List.copyOf(result);
+		return canonicalForm;
+	}
+
+	/**
+	 * Compares two canonical forms, whose elements at the same position may be
+	 * of different classes.
+	 */
+	private static boolean sameForm(List<Object> first, List<Object> second) {
+		if (first.size() != second.size()) {
+			return false;
+		}
+		for (int i = 0; i < first.size(); ++i) {
+			var element1 = first.get(i);
+			var element2 = second.get(i);
+			if (element1.getClass() != element2.getClass() || !element1.equals(element2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Object canonicalVal(Val val, Map<Obj, Integer> objToName, List<Obj> reached) {
+		if (!(val instanceof Obj) || val == Obj.NULL) {
+			return val;
+		}
+		var obj = (Obj) val;
+		var name = objToName.get(obj);
+		if (name == null) {
+			name = objToName.size();
+			objToName.put(obj, name);
+			reached.add(obj);
+		}
+		return pool.isAllocatable(obj) ? name : obj;
+	}
+
+	static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xffffffffL);
+	}
+
+	/**
+	 * The finalizer of the SplitMix64 generator, which spreads the bits of its
+	 * input over the whole result.
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
 	public boolean equalHeap(JmStore other) {
 		assert objects.equals(other.objects);
 		return heap.equals(other.heap);
@@ -140,10 +430,10 @@ public class JmStore implements Store {
 
 	@Override
 	public int hashCode() {
-		int result = objects.hashCode();
-		result = result * 31 + env.hashCode();
-		result = result * 31 + heap.hashCode();
-		return result;
+		if (pool.canonicalEquality) {
+			return canonicalForm().hashCode();
+		}
+		return Long.hashCode(zobrist);
 	}
 
 	/**
@@ -154,19 +444,138 @@ public class JmStore implements Store {
 	 *            A collection of out-of-scope variables.
 	 */
 	public JmStore clean(Iterable<Var> deadVars) {
-		JmStore result = new JmStore(new HashSet<>(this.objects), Set.of(), new HashMap<>(this.env), this.heap);
+		PersistentMap<Var, Val> newEnv = this.env;
 		for (Var deadVar : deadVars) {
-			result.env.remove(deadVar);
+			newEnv = newEnv.minus(deadVar);
 		}
+		JmStore result = new JmStore(new HashSet<>(this.objects), pool.withoutFreeObjects(), newEnv, this.heap);
 		result = result.removeGarbage();
 		return result;
 	}
 
+	/**
+	 * Tests whether the number of objects reachable from the variables differs
+	 * from the number of allocated objects. If the leak suspects of this store
+	 * are known (see {@link #leakSuspects}), only the allocated suspects are
+	 * tested, and the heap is traversed only for those that are not held by a
+	 * variable or by a field of an object held by a variable, which is the
+	 * common case of reference assignments. Since a store whose suspects are
+	 * all reached forgets them, the stores derived from it by assignments
+	 * suspect only the objects whose references those assignments overwrote,
+	 * and assignments that overwrite no reference leave nothing to test.
+	 */
 	public boolean containsGarbage() {
-		int numObjects = objects.size();
-		JmStore gfree = removeGarbage();
-		int numObjectsAfterGC = gfree.getObjects().size();
-		return numObjects != numObjectsAfterGC;
+		Obj[] suspects = leakSuspects;
+		if (suspects == null) {
+			return checkGarbage();
+		}
+		List<Obj> targets = new ArrayList<>(suspects.length);
+		for (Obj suspect : suspects) {
+			if (hasObject(suspect) && !targets.contains(suspect) && !reachableInOneStep(suspect)) {
+				targets.add(suspect);
+			}
+		}
+		if (targets.isEmpty() || reachesAll(targets)) {
+			leakSuspects = NO_SUSPECTS;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tests whether the number of objects reachable from the variables differs
+	 * from the number of allocated objects by traversing the heap, and clears
+	 * the leak suspects of this store if they are exactly the allocated objects.
+	 */
+	protected boolean checkGarbage() {
+		Set<Obj> reachable = reachableObjects();
+		if (reachable.equals(objects)) {
+			leakSuspects = NO_SUSPECTS;
+			return false;
+		}
+		return reachable.size() != objects.size();
+	}
+
+	/**
+	 * Tests whether the given object is allocated in this store.
+	 */
+	protected boolean hasObject(Obj obj) {
+		return objects.contains(obj);
+	}
+
+	/**
+	 * Tests whether the given object is held by a variable or by a field of an
+	 * object held by a variable, which makes it reachable, without traversing
+	 * the heap.
+	 */
+	protected boolean reachableInOneStep(Obj target) {
+		for (Val v : env.values()) {
+			if (v == target) {
+				return true;
+			}
+			if (v instanceof Obj && v != Obj.NULL) {
+				Map<Field, Val> objFields = heap.get(v);
+				if (objFields != null && objFields.containsValue(target)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tests whether all the given objects are reachable from the variables,
+	 * traversing the heap only until they are all reached. Takes time linear
+	 * in the number of reachable objects and their fields, at most
+	 * {@link #MAX_SUSPECTS} targets being tested at once.
+	 */
+	protected boolean reachesAll(Collection<Obj> targets) {
+		int remaining = targets.size();
+		Set<Obj> visited = new HashSet<>();
+		ArrayDeque<Obj> worklist = new ArrayDeque<>();
+		for (Val v : env.values()) {
+			if (v instanceof Obj && v != Obj.NULL && visited.add((Obj) v)) {
+				if (targets.contains(v) && --remaining == 0) {
+					return true;
+				}
+				worklist.add((Obj) v);
+			}
+		}
+		while (!worklist.isEmpty()) {
+			Map<Field, Val> objFields = heap.get(worklist.remove());
+			if (objFields == null) {
+				continue;
+			}
+			for (Val fieldVal : objFields.values()) {
+				if (fieldVal instanceof Obj && fieldVal != Obj.NULL && visited.add((Obj) fieldVal)) {
+					if (targets.contains(fieldVal) && --remaining == 0) {
+						return true;
+					}
+					worklist.add((Obj) fieldVal);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the leak suspects of a store obtained from this store by
+	 * overwriting the value 'old' with 'v'.
+	 */
+	protected Obj[] suspectsAfter(Val old, Val v) {
+		Obj[] suspects = leakSuspects;
+		if (suspects == null || v instanceof Obj && v != Obj.NULL && !hasObject((Obj) v)) {
+			return null;
+		}
+		if (!(old instanceof Obj) || old == Obj.NULL || old.equals(v)) {
+			return suspects;
+		}
+		if (suspects.length == MAX_SUSPECTS) {
+			return null;
+		}
+		Obj[] result = Arrays.copyOf(suspects, suspects.length + 1);
+		result[suspects.length] = (Obj) old;
+		return result;
 	}
 
 	public boolean isInitialized(Var var) {
@@ -221,7 +630,7 @@ public class JmStore implements Store {
 	 * initialized.
 	 */
 	public Obj eval(RefVar var) {
-		Obj result = (Obj) env.get(var);
+		Obj result = (Obj) eval((Var) var);
 		return result;
 	}
 
@@ -230,7 +639,7 @@ public class JmStore implements Store {
 	 * initialized.
 	 */
 	public IntVal eval(PrimitiveVar var) {
-		IntVal result = (IntVal) env.get(var);
+		IntVal result = (IntVal) eval((Var) var);
 		return result;
 	}
 
@@ -266,31 +675,25 @@ public class JmStore implements Store {
 	 */
 	public Obj eval(Obj obj, RefField field) {
 		assert obj != null;
-		Map<Field, Val> objFields = heap.get(obj);
-		return (Obj) objFields.get(field);
+		return (Obj) eval(obj, (Field) field);
 	}
 
 	public IntVal eval(Obj obj, PrimitiveField field) {
 		assert obj != null;
-		Map<Field, Val> objFields = heap.get(obj);
-		return (IntVal) objFields.get(field);
+		return (IntVal) eval(obj, (Field) field);
 	}
 
 	/**
 	 * Returns a free object of the given type, if there is one available and an
-	 * empty result otherwise.
+	 * empty result otherwise.<br>
+	 * The set of free objects may be shared by several stores, which may be
+	 * accessed by concurrent searches, and is therefore updated atomically.
 	 * 
 	 * @param type
 	 *            The type of the object to allocate.
 	 */
 	public Optional<Obj> allocate(RefType type) {
-		for (Obj o : freeObjects) {
-			if (o.type == type) {
-				freeObjects.remove(o);
-				return Optional.of(o);
-			}
-		}
-		return Optional.empty();
+		return pool.allocate(type);
 	}
 
 	/**
@@ -299,9 +702,14 @@ public class JmStore implements Store {
 	 */
 	public JmStore assign(Var lvar, Val v) {
 		assert lvar != null && v != null && StoreUtils.typecheck(lvar, v);
-		Map<Var, Val> newEnv = new HashMap<>(this.env);
-		newEnv.put(lvar, v);
-		JmStore newState = new JmStore(this.objects, this.freeObjects, newEnv, this.heap);
+		Val old = env.get(lvar);
+		long newZobrist = zobrist ^ (old != null ? zobrist(lvar, old) : 0) ^ zobrist(lvar, v);
+		JmStore newState = new JmStore(this.objects, this.pool, this.env.plus(lvar, v), this.heap,
+				newZobrist);
+		if (goalWitness != null && !goalWitness.reads(lvar)) {
+			newState.goalWitness = goalWitness;
+		}
+		newState.leakSuspects = suspectsAfter(old, v);
 		return newState;
 	}
 
@@ -314,14 +722,17 @@ public class JmStore implements Store {
 		assert StoreUtils.typecheck(field, v);
 		assert StoreUtils.typecheck(field, lobj);
 
-		Map<Obj, Map<Field, Val>> newHeap = new HashMap<>(heap);
-		Map<Field, Val> lobjFields = newHeap.get(lobj);
-		lobjFields = lobjFields == null ? Collections.emptyMap() : lobjFields;
-		lobjFields = new HashMap<>(lobjFields);
-		newHeap.put(lobj, lobjFields);
-		lobjFields.put(field, v);
+		PersistentMap<Field, Val> lobjFields = heap.get(lobj);
+		lobjFields = lobjFields == null ? PersistentMap.empty() : lobjFields;
+		var newHeap = heap.plus(lobj, lobjFields.plus(field, v));
+		Val old = lobjFields.get(field);
+		long newZobrist = zobrist ^ (old != null ? zobrist(lobj, field, old) : 0) ^ zobrist(lobj, field, v);
 
-		JmStore newState = new JmStore(this.objects, this.freeObjects, this.env, newHeap);
+		JmStore newState = new JmStore(this.objects, this.pool, this.env, newHeap, newZobrist);
+		if (goalWitness != null && !goalWitness.reads(lobj, field)) {
+			newState.goalWitness = goalWitness;
+		}
+		newState.leakSuspects = suspectsAfter(old, v);
 		return newState;
 	}
 
@@ -341,7 +752,56 @@ public class JmStore implements Store {
 	 * Adds to the set of objects that can be allocated.
 	 */
 	public void addFreeObjects(HashSet<Obj> objs) {
-		freeObjects.addAll(objs);
+		pool.addAll(objs);
+	}
+
+	/**
+	 * Returns a copy of the set of free objects. The set may be shared with
+	 * stores that allocate concurrently (see {@link #allocate}).
+	 */
+	public Set<Obj> getFreeObjects() {
+		return pool.free();
+	}
+
+	/**
+	 * Returns the pool of free objects of this store.
+	 */
+	public ObjectPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Indicates whether this store is compared up to a renaming of allocatable
+	 * objects (see {@link JminorProblem#useCanonicalStores()}), via its
+	 * canonical form, rather than by object identities.
+	 */
+	public boolean canonicalEquality() {
+		return pool.canonicalEquality;
+	}
+
+	/**
+	 * Indicates whether the given object may be allocated by statements, in
+	 * which case its identity is immaterial (see {@link ObjectPool}).
+	 */
+	public boolean isAllocatable(Obj obj) {
+		return pool.isAllocatable(obj);
+	}
+
+	/**
+	 * Returns an equal store whose free objects are given by the given pool.
+	 */
+	public JmStore withPool(ObjectPool pool) {
+		var result = new JmStore(objects, pool, env, heap, zobrist);
+		result.leakSuspects = leakSuspects;
+		return result;
+	}
+
+	/**
+	 * Tests whether this store and the given store have equal sets of free
+	 * objects.
+	 */
+	protected boolean equalFreeObjects(JmStore other) {
+		return pool.equalFree(other.pool);
 	}
 
 	/**
@@ -349,6 +809,32 @@ public class JmStore implements Store {
 	 * environment variables.
 	 */
 	protected JmStore removeGarbage() {
+		Set<Obj> reachable = reachableObjects();
+		Set<Obj> newObjs = new HashSet<>(reachable);
+		// Removes the unreachable objects from the heap, rather than building a
+		// new heap from the reachable ones, to share the remaining structure.
+		var newHeap = this.heap;
+		for (Obj heapObj : this.heap.keySet()) {
+			if (!reachable.contains(heapObj)) {
+				newHeap = newHeap.minus(heapObj);
+			}
+		}
+		for (Obj reachhObj : reachable) {
+			if (!newHeap.containsKey(reachhObj)) {
+				newHeap = newHeap.plus(reachhObj, null);
+			}
+		}
+		JmStore result = new JmStore(newObjs, this.pool, this.env, newHeap);
+		// Collected objects have uninitialized fields, which fail any check.
+		result.goalWitness = goalWitness;
+		result.leakSuspects = NO_SUSPECTS;
+		return result;
+	}
+
+	/**
+	 * Returns the objects reachable from the environment variables.
+	 */
+	private Set<Obj> reachableObjects() {
 		Set<Obj> reachable = new HashSet<>(env.values().size());
 		for (Val v : env.values()) {
 			if (v instanceof Obj)
@@ -376,23 +862,34 @@ public class JmStore implements Store {
 			frontier = nextFrontier;
 		}
 		reachable.remove(Obj.NULL);
-		Set<Obj> newObjs = new HashSet<>(reachable);
-		Map<Obj, Map<Field, Val>> newHeap = new HashMap<>();
-		for (Obj reachhObj : reachable) {
-			newHeap.put(reachhObj, this.heap.get(reachhObj));
+		return reachable;
+	}
+
+	/**
+	 * Returns a store equal to this store, where the field map of every object
+	 * is replaced by the result of applying the given operator to it, which
+	 * must be an equal map.
+	 */
+	JmStore internFields(UnaryOperator<PersistentMap<Field, Val>> interner) {
+		PersistentMap<Obj, PersistentMap<Field, Val>> newHeap = PersistentMap.empty();
+		for (Map.Entry<Obj, PersistentMap<Field, Val>> entry : heap.entrySet()) {
+			var fields = entry.getValue();
+			newHeap = newHeap.plus(entry.getKey(), fields != null ? interner.apply(fields) : null);
 		}
-		JmStore result = new JmStore(newObjs, this.freeObjects, this.env, newHeap);
+		JmStore result = new JmStore(this.objects, this.pool, this.env, newHeap, zobrist);
+		result.goalWitness = goalWitness;
+		result.leakSuspects = leakSuspects;
 		return result;
 	}
 
 	@Override
 	public String toString() {
 		ST template = templates.load("Store");
-		template.add("vars", env.keySet());
-		template.add("refObjs", env.values());
+		template.add("vars", getEnvMap().keySet());
+		template.add("refObjs", getEnvMap().values());
 		for (Obj obj : StoreUtils.dfs(this)) {
 			ST fieldST = templates.load("Fields");
-			Map<Field, Val> fieldMap = heap.get(obj);
+			Map<Field, Val> fieldMap = fieldMap(obj);
 			if (fieldMap != null) {
 				fieldST.add("obj", obj);
 				fieldST.add("fields", fieldMap.keySet());
@@ -437,11 +934,26 @@ public class JmStore implements Store {
 			return this == o;
 		}
 
+		@Override
+		public long fingerprint(long seed) {
+			return super.fingerprint(seed ^ System.identityHashCode(this));
+		}
+
 		@Override
 		public JmStore clean(Iterable<Var> deadVars) {
 			return this;
 		}
 
+		@Override
+		JmStore internFields(UnaryOperator<PersistentMap<Field, Val>> interner) {
+			return this;
+		}
+
+		@Override
+		public boolean containsGarbage() {
+			throw new Error("Illegal access to error store!");
+		}
+
 		@Override
 		public Collection<Obj> getObjects() {
 			throw new Error("Illegal access to error store!");
@@ -20,6 +20,8 @@ import pexyn.Trace;
 public class JminorInterpreter extends JminorVisitor {
 	public static final JminorInterpreter v = new JminorInterpreter();
 
+	private static final ThreadLocal<JminorInterpreter> local = ThreadLocal.withInitial(JminorInterpreter::new);
+
 	protected JmStore store;
 	protected boolean resultCond;
 	protected Val resultVal;
@@ -29,6 +31,15 @@ public class JminorInterpreter extends JminorVisitor {
 	protected int stepCounter;
 	protected int maxSteps;
 
+	/**
+	 * Returns an interpreter that is confined to the calling thread. Unlike
+	 * {@link #v}, the result can be used while other threads are running
+	 * statements, e.g., during a parallel search.
+	 */
+	public static JminorInterpreter local() {
+		return local.get();
+	}
+
 	/**
 	 * Guesses the number of steps needed to evaluate the given statement on the
 	 * given store.
@@ -36,7 +47,7 @@ public class JminorInterpreter extends JminorVisitor {
 	 * TODO: compute by taking the loop-depth into account.
 	 */
 	public int guessMaxSteps(Stmt stmt, JmStore store) {
-		return store.objects.size() * store.objects.size() + 1000;
+		return store.getObjects().size() * store.getObjects().size() + 1000;
 	}
 
 	/**
@@ -19,11 +19,11 @@ public class JminorLoadedInterpreter implements LoadedInterpreter<JmStore, Stmt,
 
 	@Override
 	public Optional<JmStore> run(JmStore input, int maxSteps) {
-		return JminorInterpreter.v.run(prog, input, maxSteps);
+		return JminorInterpreter.local().run(prog, input, maxSteps);
 	}
 
 	@Override
 	public Optional<Trace<JmStore, Stmt>> genTrace(JmStore input, int maxSteps) {
-		return JminorInterpreter.v.genTrace(prog, input, maxSteps);
+		return JminorInterpreter.local().genTrace(prog, input, maxSteps);
 	}
 }
@@ -1,8 +1,12 @@
 package jminor;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Optional;
 
+import bgu.cs.util.Union2;
+import pexyn.Example;
 import pexyn.Semantics;
 import pexyn.LoadedInterpreter;
 import pexyn.SynthesisProblem;
@@ -29,6 +33,54 @@ public class JminorProblem extends SynthesisProblem<JmStore, Stmt, BoolExpr> {
 		this.optProg = optProg;
 	}
 
+	/**
+	 * Makes the stores of this problem compare up to a renaming of the objects
+	 * that they may allocate, which collapses states whose heaps are isomorphic,
+	 * by giving the examples copies of their pools of free objects that compare
+	 * their stores so (see {@link ObjectPool}). Since the stores of the
+	 * searches and interpreters are derived from those of the examples, they
+	 * compare so as well. Call before planning.
+	 */
+	public void useCanonicalStores() {
+		for (int i = 0; i < examples.size(); ++i) {
+			var example = examples.get(i);
+			var pools = new IdentityHashMap<ObjectPool, ObjectPool>();
+			var steps = new ArrayList<Union2<JmStore, Stmt>>(example.size());
+			for (var step : example) {
+				if (step.isT1()) {
+					var store = step.getT1();
+					var pool = pools.computeIfAbsent(store.getPool(), p -> p.withCanonicalEquality(true));
+					steps.add(Union2.ofT1(store.withPool(pool)));
+				} else {
+					steps.add(step);
+				}
+			}
+			var canonicalExample = new Example<JmStore, Stmt>(steps, example.id, example.name);
+			canonicalExample.isTest = example.isTest;
+			examples.set(i, canonicalExample);
+		}
+	}
+
+	/**
+	 * Replaces the stores of the examples by equal {@link DenseJmStore}s, over a
+	 * layout of the variables, fields, and objects of this problem. Since the
+	 * stores of the searches and interpreters are derived from those of the
+	 * examples, they become dense as well.
+	 */
+	public void useDenseStores() {
+		var layout = StoreLayout.of(this);
+		for (int i = 0; i < examples.size(); ++i) {
+			var example = examples.get(i);
+			var steps = new ArrayList<Union2<JmStore, Stmt>>(example.size());
+			for (var step : example) {
+				steps.add(step.isT1() ? Union2.ofT1(DenseJmStore.of(layout, step.getT1())) : step);
+			}
+			var denseExample = new Example<JmStore, Stmt>(steps, example.id, example.name);
+			denseExample.isTest = example.isTest;
+			examples.set(i, denseExample);
+		}
+	}
+
 	@Override
 	public String toString() {
 		var result = new StringBuilder();
@@ -1,14 +1,17 @@
 package jminor;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.stringtemplate.v4.ST;
 
@@ -18,6 +21,7 @@ import bgu.cs.util.rel.HashRel2;
 import bgu.cs.util.rel.Rel2;
 import bgu.cs.util.treeGrammar.Node;
 import jminor.Var.VarRole;
+import pexyn.Interner;
 import pexyn.StructuredSemantics;
 import pexyn.Trace;
 
@@ -55,6 +59,13 @@ public class JminorSemantics implements StructuredSemantics<JmStore, Stmt, BoolE
 
 	protected GuardCostEvaluator guardCostEvaluator = new GuardCostEvaluator();
 
+	/**
+	 * The shared stores and field maps of the plans of this problem (see
+	 * {@link #intern}).
+	 */
+	private final Interner<JmStore> stores = new Interner<>();
+	private final Interner<PersistentMap<Field, Val>> fieldMaps = new Interner<>();
+
 	@Override
 	public String name() {
 		return "JminorSemantics";
@@ -67,12 +78,20 @@ public class JminorSemantics implements StructuredSemantics<JmStore, Stmt, BoolE
 
 	@Override
 	public boolean test(BoolExpr expr, JmStore store) {
-		Boolean result = JminorInterpreter.v.test(expr, store);
+		Boolean result = JminorInterpreter.local().test(expr, store);
 		return result != null && result.booleanValue();
 	}
 
+	/**
+	 * Checks whether the first store agrees with the variables and fields of
+	 * the second store. When stores are compared up to renaming (see
+	 * {@link JmStore#canonicalEquality()}), so are matches.
+	 */
 	@Override
 	public boolean match(JmStore first, JmStore second) {
+		if (second.canonicalEquality()) {
+			return matchUpToRenaming(first, second);
+		}
 		for (Map.Entry<Var, Val> entry : second.getEnvMap().entrySet()) {
 			Var var = entry.getKey();
 			Val val = entry.getValue();
@@ -95,6 +114,104 @@ public class JminorSemantics implements StructuredSemantics<JmStore, Stmt, BoolE
 		return true;
 	}
 
+	/**
+	 * Compiles the goal store into a {@link CompiledGoal}, unless stores are
+	 * compared up to renaming.
+	 */
+	@Override
+	public Predicate<JmStore> compileMatch(JmStore second) {
+		if (second.canonicalEquality()) {
+			return first -> matchUpToRenaming(first, second);
+		}
+		return new CompiledGoal(second);
+	}
+
+	/**
+	 * Checks whether the first store matches the second store up to a renaming
+	 * of the objects that the first store may allocate (see
+	 * {@link JmStore#isAllocatable(Obj)}). The renaming is forced
+	 * by following the variables and fields of the second store, so no search
+	 * is needed. Other objects, as well as allocated objects of the second store
+	 * that are not reachable from its variables, must match exactly.
+	 */
+	public boolean matchUpToRenaming(JmStore first, JmStore second) {
+		var secondToFirst = new HashMap<Obj, Obj>();
+		var firstToSecond = new HashMap<Obj, Obj>();
+		var worklist = new ArrayDeque<Obj>();
+		for (Map.Entry<Var, Val> entry : second.getEnvMap().entrySet()) {
+			Var var = entry.getKey();
+			if (!first.isInitialized(var)
+					|| !correspond(first, entry.getValue(), first.eval(var), secondToFirst, firstToSecond, worklist)) {
+				return false;
+			}
+		}
+		while (!worklist.isEmpty()) {
+			Obj secondObj = worklist.removeFirst();
+			Obj firstObj = secondToFirst.get(secondObj);
+			for (Map.Entry<Field, Val> entry : second.geFields(secondObj).entrySet()) {
+				Field field = entry.getKey();
+				if (!first.isInitialized(firstObj, field) || !correspond(first, entry.getValue(),
+						first.eval(firstObj, field), secondToFirst, firstToSecond, worklist)) {
+					return false;
+				}
+			}
+		}
+
+		for (Obj obj : second.getObjects()) {
+			if (secondToFirst.containsKey(obj)) {
+				continue;
+			}
+			for (Map.Entry<Field, Val> entry : second.geFields(obj).entrySet()) {
+				Field field = entry.getKey();
+				if (!first.isInitialized(obj, field) || !first.eval(obj, field).equals(entry.getValue())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a value of the second store corresponds to a value of the
+	 * first store, extending the renaming of objects if needed.
+	 */
+	private static boolean correspond(JmStore first, Val secondVal, Val firstVal, Map<Obj, Obj> secondToFirst,
+			Map<Obj, Obj> firstToSecond, ArrayDeque<Obj> worklist) {
+		if (!(secondVal instanceof Obj) || !first.isAllocatable((Obj) secondVal)) {
+			return secondVal.equals(firstVal);
+		}
+		if (!(firstVal instanceof Obj) || !first.isAllocatable((Obj) firstVal)) {
+			return false;
+		}
+		Obj secondObj = (Obj) secondVal;
+		Obj firstObj = (Obj) firstVal;
+		Obj mapped = secondToFirst.get(secondObj);
+		if (mapped != null) {
+			return mapped.equals(firstObj);
+		}
+		if (firstToSecond.containsKey(firstObj)) {
+			return false;
+		}
+		secondToFirst.put(secondObj, firstObj);
+		firstToSecond.put(firstObj, secondObj);
+		worklist.add(secondObj);
+		return true;
+	}
+
+	/**
+	 * Returns the shared store equal to the given store, whose field maps are
+	 * shared with the other shared stores. When stores are compared up to
+	 * renaming, only the field maps are shared, since an equal store may name
+	 * its objects differently.
+	 */
+	@Override
+	public JmStore intern(JmStore store) {
+		if (store.canonicalEquality()) {
+			return store.internFields(fieldMaps::intern);
+		}
+		return stores.intern(store, s -> s.internFields(fieldMaps::intern));
+	}
+
 	@Override
 	public Optional<JmStore> apply(Stmt stmt, JmStore store) {
 		Optional<JmStore> result = Optional.empty();
@@ -237,16 +354,64 @@ public class JminorSemantics implements StructuredSemantics<JmStore, Stmt, BoolE
 		return result;
 	}
 
+	/**
+	 * Returns the statements that may take part in reaching a store matching
+	 * the given goal store, by backward chaining from the variables and fields
+	 * of the goal: a statement is relevant if it writes a relevant cell (see
+	 * {@link StmtFootprint}), and the cells read by a relevant statement are
+	 * relevant. Dropping the other statements from a plan leaves the values of
+	 * the relevant cells, and hence the enabledness of the remaining statements
+	 * and the match with the goal, unchanged. Searching over the relevant
+	 * statements therefore preserves the cost of optimal plans.
+	 */
+	public List<Stmt> goalRelevantActions(JmStore goal) {
+		var relevantCells = new HashSet<Object>(goal.getEnvMap().keySet());
+		for (Obj obj : goal.getObjects()) {
+			relevantCells.addAll(goal.geFields(obj).keySet());
+		}
+		var footprints = new ArrayList<StmtFootprint>(stmts.size());
+		for (var stmt : stmts) {
+			var footprint = StmtFootprint.of(stmt);
+			if (footprint.unknown) {
+				return new ArrayList<>(stmts);
+			}
+			footprints.add(footprint);
+		}
+
+		var relevant = new boolean[footprints.size()];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < relevant.length; ++i) {
+				var footprint = footprints.get(i);
+				if (!relevant[i] && !Collections.disjoint(footprint.writes, relevantCells)) {
+					relevant[i] = true;
+					relevantCells.addAll(footprint.reads);
+					changed = true;
+				}
+			}
+		}
+
+		var result = new ArrayList<Stmt>();
+		int i = 0;
+		for (var stmt : stmts) {
+			if (relevant[i++]) {
+				result.add(stmt);
+			}
+		}
+		return result;
+	}
+
 	public static Set<IntVal> collectIntValsFromStores(List<Trace<JmStore, Stmt>> plans) {
 		final var result = new HashSet<IntVal>();
 		for (final var plan : plans) {
 			for (final JmStore store : plan.states()) {
-				for (final Val v : store.env.values()) {
+				for (final Val v : store.getEnvMap().values()) {
 					if (v instanceof IntVal) {
 						result.add((IntVal) v);
 					}
 				}
-				for (final Obj o : store.objects) {
+				for (final Obj o : store.getObjects()) {
 					for (final Field field : o.type.fields) {
 						if (field.dstType == IntType.v) {
 							Val v = store.eval(o, field);
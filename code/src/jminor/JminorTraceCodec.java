@@ -0,0 +1,229 @@
+package jminor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.apache.commons.configuration2.Configuration;
+
+import bgu.cs.util.treeGrammar.Node;
+import pexyn.ArrayListTrace;
+import pexyn.Example;
+import pexyn.Trace;
+import pexyn.TraceCache;
+import pexyn.TraceCodec;
+
+/**
+ * Encodes the traces of Jminor examples as sequences of statement indices.
+ * Statements are indexed in a dictionary consisting of the statements of the
+ * semantics, the statements of the reference program, and the statements
+ * appearing in the example. The stores are recomputed by replaying the
+ * statements on the input store, and a decoded plan is accepted only if it
+ * reaches the goal store of its example.
+ *
+ * @author romanm
+ */
+public class JminorTraceCodec implements TraceCodec<JmStore, Stmt> {
+	protected final JminorSemantics semantics;
+	protected final List<Stmt> problemStmts = new ArrayList<>();
+	protected final String problemDescription;
+
+	public JminorTraceCodec(JminorProblem problem) {
+		this.semantics = problem.semantics;
+		var description = new StringBuilder();
+		for (var stmt : semantics.stmts) {
+			problemStmts.add(stmt);
+			description.append(stmt).append(";");
+		}
+		if (problem.optProg.isPresent()) {
+			var prog = problem.optProg.get();
+			collectStmts(prog, problemStmts);
+			description.append("\nprogram:").append(prog);
+		}
+		problemStmts.add(RetStmt.v);
+		problemDescription = description.toString();
+	}
+
+	/**
+	 * Creates a trace cache for the given problem in the directory given by
+	 * 'pexyn.cache.dir', which is relative to the given output directory unless
+	 * it is absolute, and bounded by 'pexyn.cache.maxMB' megabytes.
+	 */
+	public static TraceCache<JmStore, Stmt> createCache(JminorProblem problem, Configuration config,
+			String outputDirPath) {
+		var dir = new File(config.getString("pexyn.cache.dir", "cache"));
+		if (!dir.isAbsolute()) {
+			dir = new File(outputDirPath, dir.getPath());
+		}
+		long maxBytes = config.getLong("pexyn.cache.maxMB", 64) * 1024 * 1024;
+		return new TraceCache<>(new JminorTraceCodec(problem), dir, maxBytes);
+	}
+
+	@Override
+	public String describe(Example<JmStore, Stmt> example) {
+		var result = new StringBuilder(problemDescription);
+		var objToName = new HashMap<Obj, String>();
+		for (var step : example) {
+			result.append("\n");
+			if (step.isT1()) {
+				describe(step.getT1(), objToName, result);
+			} else {
+				result.append(step.getT2());
+			}
+		}
+		return result.toString();
+	}
+
+	@Override
+	public void encode(Example<JmStore, Stmt> example, Trace<JmStore, Stmt> trace, DataOutput out)
+			throws IOException {
+		var dictionary = dictionary(example);
+		var stmtToIndex = new HashMap<Stmt, Integer>();
+		for (int i = dictionary.size() - 1; i >= 0; --i) {
+			stmtToIndex.put(dictionary.get(i), i);
+		}
+		out.writeInt(trace.size() - 1);
+		for (var stmt : trace.actions()) {
+			Integer index = stmtToIndex.get(stmt);
+			if (index == null) {
+				throw new IOException("Unable to encode statement " + stmt);
+			}
+			out.writeShort(index);
+		}
+	}
+
+	@Override
+	public Optional<Trace<JmStore, Stmt>> decode(Example<JmStore, Stmt> example, DataInput in) throws IOException {
+		var dictionary = dictionary(example);
+		int length = in.readInt();
+		JmStore store = example.input();
+		var result = new ArrayListTrace<JmStore, Stmt>(store);
+		for (int i = 0; i < length; ++i) {
+			int index = in.readUnsignedShort();
+			if (index >= dictionary.size()) {
+				return Optional.empty();
+			}
+			var stmt = dictionary.get(index);
+			if (stmt instanceof AssignStmt || stmt instanceof ParallelAssign) {
+				var next = semantics.apply(stmt, store);
+				if (!next.isPresent()) {
+					return Optional.empty();
+				}
+				store = next.get();
+			}
+			// Other statements label the evaluation of conditions, which do not
+			// change the store.
+			result.append(stmt, store);
+		}
+		if (!example.inputOnly() && !followsSteps(example, result)) {
+			return Optional.empty();
+		}
+		return Optional.of(result);
+	}
+
+	/**
+	 * Checks whether the given plan passes through the steps of the given
+	 * example in order, i.e., it reaches a store matching each goal store and
+	 * applies each statement of the example right after the preceding step.
+	 */
+	private boolean followsSteps(Example<JmStore, Stmt> example, Trace<JmStore, Stmt> plan) {
+		int pos = 0;
+		for (int i = 1; i < example.size(); ++i) {
+			var step = example.step(i);
+			if (step.isT1()) {
+				while (!semantics.match(plan.stateAt(pos), step.getT1())) {
+					if (++pos >= plan.size()) {
+						return false;
+					}
+				}
+			} else {
+				if (pos >= plan.size() - 1 || !plan.actionAt(pos).equals(step.getT2())) {
+					return false;
+				}
+				++pos;
+			}
+		}
+		return pos == plan.size() - 1;
+	}
+
+	private List<Stmt> dictionary(Example<JmStore, Stmt> example) {
+		var result = new ArrayList<Stmt>(problemStmts);
+		for (var step : example) {
+			if (!step.isT1()) {
+				result.add(step.getT2());
+			}
+		}
+		if (result.size() > 0xffff) {
+			throw new Error("Too many statements to encode: " + result.size());
+		}
+		return result;
+	}
+
+	private static void collectStmts(Node node, List<Stmt> result) {
+		if (node instanceof Stmt) {
+			result.add((Stmt) node);
+		}
+		for (var sub : node.getArgs()) {
+			collectStmts(sub, result);
+		}
+	}
+
+	/**
+	 * Appends a description of the given store, which does not depend on the
+	 * identities of objects. Objects are named in the order in which they are
+	 * reached from the variables, sorted by name, and the names are shared by
+	 * all stores of an example, since they may refer to the same objects.
+	 */
+	private static void describe(JmStore store, Map<Obj, String> objToName, StringBuilder result) {
+		var env = new TreeMap<String, Val>();
+		store.getEnvMap().forEach((var, val) -> env.put(var.name, val));
+		var reached = new ArrayList<Obj>();
+		env.forEach((name, val) -> {
+			result.append(name).append("=").append(valName(val, objToName, reached)).append(",");
+		});
+		for (int i = 0; i < reached.size(); ++i) {
+			var obj = reached.get(i);
+			var fields = new ArrayList<>(store.geFields(obj).entrySet());
+			fields.sort(Comparator.comparing(entry -> entry.getKey().name));
+			for (var entry : fields) {
+				result.append(objToName.get(obj)).append(".").append(entry.getKey().name).append("=")
+						.append(valName(entry.getValue(), objToName, reached)).append(",");
+			}
+		}
+		// Unreachable and free objects matter only by their types.
+		var otherTypes = new TreeMap<String, Integer>();
+		for (var obj : store.getObjects()) {
+			if (!reached.contains(obj)) {
+				otherTypes.merge("unreachable " + obj.type.name, 1, Integer::sum);
+			}
+		}
+		for (var obj : store.getFreeObjects()) {
+			otherTypes.merge("free " + obj.type.name, 1, Integer::sum);
+		}
+		result.append(otherTypes);
+	}
+
+	private static String valName(Val val, Map<Obj, String> objToName, List<Obj> reached) {
+		if (val instanceof Obj && val != Obj.NULL) {
+			var obj = (Obj) val;
+			var name = objToName.get(obj);
+			if (name == null) {
+				name = "o" + objToName.size();
+				objToName.put(obj, name);
+			}
+			if (!reached.contains(obj)) {
+				reached.add(obj);
+			}
+			return name;
+		}
+		return val.getName();
+	}
+}
\ No newline at end of file
@@ -18,7 +18,9 @@ import jminor.codegen.AutomatonCodegen;
 import pexyn.PETISynthesizer;
 import pexyn.StructuredSemantics;
 import pexyn.generalization.AutomatonToStructuredCmd;
-import pexyn.planning.AStar;
+import pexyn.planning.LockstepPlanner;
+import pexyn.planning.PlannerFactory;
+import pexyn.planning.TR;
 
 /**
  * Synthesizes programs from a heap-format specification file.
@@ -109,15 +111,36 @@ public class Main {
 		logger.info("Synthesizer: started");
 		synthesisTime.reset();
 		planningTime.reset();
+		PETISynthesizer<JmStore, Stmt, BoolExpr> synthesizer = null;
 		try {
 			var problem = genProblem();
+			if (config.getBoolean("jminor.canonicalStores", false)) {
+				problem.useCanonicalStores();
+			}
+			if (config.getBoolean("jminor.denseStores", false)) {
+				problem.useDenseStores();
+			}
 			debugger.addLink(logFile.getName(), "Events log");
 			debugger.addCodeFile("problem.txt", problem.toString(), "Specification");
 			debugger.printExamples(problem.examples);
 			synthesisTime.start();
-			var planner = new AStar<JmStore, Stmt>(new BasicJminorTR(problem.semantics));
-			var synthesizer = new PETISynthesizer<JmStore, Stmt, BoolExpr>(planner, config, debugger);
+			var basicTR = new BasicJminorTR(problem.semantics, config);
+			TR<JmStore, Stmt> tr = basicTR;
+			if (config.getBoolean("jminor.partialOrderReduction", false)) {
+				tr = new StubbornSetTR(tr, problem.semantics);
+			}
+			var planner = PlannerFactory.create(tr, config);
+			synthesizer = new PETISynthesizer<JmStore, Stmt, BoolExpr>(planner, config, debugger);
+			synthesizer.setPlanningTimer(planningTime);
+			if (config.getBoolean("pexyn.cache", false)) {
+				synthesizer.setTraceCache(JminorTraceCodec.createCache(problem, config, outputDirPath));
+			}
+			if (config.getBoolean("pexyn.planning.lockstep", false)) {
+				synthesizer.setLockstepPlanner(
+						new LockstepPlanner<>(tr, productTR -> PlannerFactory.create(productTR, config)));
+			}
 			var synthesisResult = synthesizer.synthesize(problem);
+			basicTR.patternDatabaseStatus().ifPresent(status -> debugger.info("Shape pattern database " + status));
 			if (synthesisResult.success()) {
 				debugger.info("PETI: found program automaton!");
 				// We have to structure _after_ testing against the validation examples,
@@ -146,7 +169,12 @@ public class Main {
 			t.printStackTrace();
 		} finally {
 			synthesisTime.stop();
-			debugger.info("Planning time: " + planningTime.toSeconds());
+			// Logs the time measured by the planning report, when there is one, so
+			// that the log agrees with its 'planningMillis'.
+			long planningMillis = synthesizer != null && synthesizer.planningReport().isPresent()
+					? synthesizer.planningReport().get().planningMillis
+					: planningTime.getTotal();
+			debugger.info("Planning time: " + planningMillis + " ms");
 			debugger.info("Synthesizer: done! (" + synthesisTime.toSeconds() + ")");
 			debugger.refresh();
 		}
@@ -1,12 +1,14 @@
 package jminor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A heap object.
  * 
  * @author romanm
  */
 public class Obj extends Val {
-	private static int counter = 0;
+	private static final AtomicInteger counter = new AtomicInteger();
 
 	/**
 	 * The constant null objects.
@@ -14,8 +16,6 @@ public class Obj extends Val {
 	public static final Obj NULL;
 
 	static {
-		counter = 0;
-
 		NULL = new Obj(NullType.v);
 	}
 
@@ -31,8 +31,7 @@ public class Obj extends Val {
 
 	public Obj(RefType type) {
 		this.type = type;
-		this.id = counter;
-		++counter;
+		this.id = counter.getAndIncrement();
 	}
 
 	@Override
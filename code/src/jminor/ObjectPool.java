@@ -0,0 +1,128 @@
+package jminor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The free objects of the stores of an example, i.e., the objects that
+ * statements may allocate, which are shared by all the stores derived from the
+ * example and may be allocated by concurrent searches.<br>
+ * The pool also remembers every object that was ever free, since the
+ * identities of these objects are immaterial: any other free object could
+ * have been allocated instead. Stores whose pool compares them up to renaming
+ * (see {@link JminorProblem#useCanonicalStores()}) therefore rename these
+ * objects, and only these, when they are compared.
+ *
+ * @author romanm
+ */
+public class ObjectPool {
+	/**
+	 * The objects that are not currently allocated.
+	 */
+	private final Set<Obj> free;
+
+	/**
+	 * The objects that were ever free, which are only added to. Read without
+	 * locking.
+	 */
+	private final Set<Obj> allocatable = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Indicates whether the stores of this pool are compared up to a renaming
+	 * of their allocatable objects, via their canonical forms, rather than by
+	 * object identities.
+	 */
+	public final boolean canonicalEquality;
+
+	/**
+	 * Constructs a pool of the given free objects.
+	 */
+	public ObjectPool(Collection<Obj> free, boolean canonicalEquality) {
+		assert !free.contains(Obj.NULL);
+		this.free = new HashSet<>(free);
+		this.allocatable.addAll(free);
+		this.canonicalEquality = canonicalEquality;
+	}
+
+	/**
+	 * Constructs an empty pool of stores compared by object identities.
+	 */
+	public ObjectPool() {
+		this(Set.of(), false);
+	}
+
+	/**
+	 * Returns a pool with the same free and allocatable objects, whose stores
+	 * are compared up to renaming as given.
+	 */
+	public synchronized ObjectPool withCanonicalEquality(boolean canonicalEquality) {
+		var result = new ObjectPool(free, canonicalEquality);
+		result.allocatable.addAll(allocatable);
+		return result;
+	}
+
+	/**
+	 * Returns a pool with the same allocatable objects and no free objects.
+	 */
+	public ObjectPool withoutFreeObjects() {
+		var result = new ObjectPool(Set.of(), canonicalEquality);
+		result.allocatable.addAll(allocatable);
+		return result;
+	}
+
+	/**
+	 * Removes and returns a free object of the given type, if there is one.
+	 */
+	public synchronized Optional<Obj> allocate(RefType type) {
+		for (Obj o : free) {
+			if (o.type == type) {
+				free.remove(o);
+				return Optional.of(o);
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Adds to the set of objects that can be allocated.
+	 */
+	public synchronized void addAll(Collection<Obj> objs) {
+		assert !objs.contains(Obj.NULL);
+		free.addAll(objs);
+		allocatable.addAll(objs);
+	}
+
+	/**
+	 * Returns a copy of the set of free objects.
+	 */
+	public synchronized Set<Obj> free() {
+		return new HashSet<>(free);
+	}
+
+	/**
+	 * Tests whether none of the given objects is free.
+	 */
+	public synchronized boolean disjoint(Set<Obj> objects) {
+		return Collections.disjoint(objects, free);
+	}
+
+	/**
+	 * Indicates whether the given object is, or once was, free, in which case
+	 * its identity is immaterial.
+	 */
+	public boolean isAllocatable(Obj obj) {
+		return allocatable.contains(obj);
+	}
+
+	/**
+	 * Tests whether this pool and the given pool have equal sets of free
+	 * objects.
+	 */
+	public boolean equalFree(ObjectPool other) {
+		return this == other || free().equals(other.free());
+	}
+}
\ No newline at end of file
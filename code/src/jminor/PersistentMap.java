@@ -0,0 +1,509 @@
+package jminor;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map implemented as a hash array mapped trie. Updates return new
+ * maps, which share all but O(log n) of their nodes with the original map, so
+ * a store can be updated without copying its whole environment or heap.<br>
+ * The map is a read-only {@link Map}; the mutators inherited from
+ * {@link AbstractMap} throw {@link UnsupportedOperationException}. Keys must
+ * not be null. The hash code, as defined by {@link Map#hashCode}, is
+ * maintained by the updates, and is used to tell maps apart before comparing
+ * their entries.
+ *
+ * @author romanm
+ *
+ * @param <K>
+ *            The type of keys.
+ * @param <V>
+ *            The type of values.
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+	private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0, 0);
+
+	/**
+	 * The number of hash bits consumed by each level of the trie.
+	 */
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * Returned by lookups of absent keys, since values may be null.
+	 */
+	private static final Object NOT_FOUND = new Object();
+
+	/**
+	 * The root of the trie, or null if the map is empty.
+	 */
+	private final Node root;
+	private final int size;
+	private final int hash;
+
+	private Set<Map.Entry<K, V>> entrySet = null;
+
+	private PersistentMap(Node root, int size, int hash) {
+		this.root = root;
+		this.size = size;
+		this.hash = hash;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> empty() {
+		return (PersistentMap<K, V>) EMPTY;
+	}
+
+	/**
+	 * Returns a persistent map with the entries of the given map, which is
+	 * returned as is if it is already persistent.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+		if (map instanceof PersistentMap) {
+			return (PersistentMap<K, V>) map;
+		}
+		PersistentMap<K, V> result = empty();
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			result = result.plus(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a map that agrees with this map, except for mapping the given key
+	 * to the given value. Returns this map if it already does.
+	 */
+	public PersistentMap<K, V> plus(K key, V value) {
+		int keyHash = spread(key.hashCode());
+		var change = new Change();
+		Node newRoot = root == null ? BitmapNode.EMPTY.plus(0, keyHash, key, value, change)
+				: root.plus(0, keyHash, key, value, change);
+		if (newRoot == root) {
+			return this;
+		}
+		int entryHash = key.hashCode() ^ Objects.hashCode(value);
+		if (change.oldValue == NOT_FOUND) {
+			return new PersistentMap<>(newRoot, size + 1, hash + entryHash);
+		} else {
+			int oldEntryHash = key.hashCode() ^ Objects.hashCode(change.oldValue);
+			return new PersistentMap<>(newRoot, size, hash - oldEntryHash + entryHash);
+		}
+	}
+
+	/**
+	 * Returns a map that agrees with this map, except for not mapping the given
+	 * key. Returns this map if it does not map the key.
+	 */
+	public PersistentMap<K, V> minus(Object key) {
+		if (root == null) {
+			return this;
+		}
+		var change = new Change();
+		Node newRoot = root.minus(0, spread(key.hashCode()), key, change);
+		if (change.oldValue == NOT_FOUND) {
+			return this;
+		}
+		if (newRoot == null) {
+			return empty();
+		}
+		int oldEntryHash = key.hashCode() ^ Objects.hashCode(change.oldValue);
+		return new PersistentMap<>(newRoot, size - 1, hash - oldEntryHash);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		if (root == null) {
+			return null;
+		}
+		Object result = root.find(0, spread(key.hashCode()), key);
+		return result == NOT_FOUND ? null : (V) result;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return root != null && root.find(0, spread(key.hashCode()), key) != NOT_FOUND;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof PersistentMap) {
+			var other = (PersistentMap<?, ?>) o;
+			if (size != other.size || hash != other.hash) {
+				return false;
+			}
+			if (root == other.root) {
+				return true;
+			}
+		}
+		return super.equals(o);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		if (root != null) {
+			root.forEach((BiConsumer<Object, Object>) action);
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new EntryIterator<>(root);
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	/**
+	 * Spreads the higher bits of hash codes downwards, since the trie consumes
+	 * the lower bits first.
+	 */
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	private static int bitpos(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	/**
+	 * Records the value replaced or removed by an update, or
+	 * {@link #NOT_FOUND}.
+	 */
+	private static class Change {
+		public Object oldValue = NOT_FOUND;
+	}
+
+	private static abstract class Node {
+		/**
+		 * Returns the value of the given key or {@link #NOT_FOUND}.
+		 */
+		public abstract Object find(int shift, int hash, Object key);
+
+		public abstract Node plus(int shift, int hash, Object key, Object value, Change change);
+
+		/**
+		 * Returns the node without the given key, which is null if the node
+		 * becomes empty.
+		 */
+		public abstract Node minus(int shift, int hash, Object key, Change change);
+
+		public abstract void forEach(BiConsumer<Object, Object> action);
+
+		/**
+		 * The keys and values of the node, interleaved. In a {@link BitmapNode},
+		 * a null key marks a child node, which takes the place of the value.
+		 */
+		public abstract Object[] array();
+	}
+
+	/**
+	 * A node holding up to 32 entries and children, indexed by the next bits of
+	 * the hashes of their keys.
+	 */
+	private static final class BitmapNode extends Node {
+		public static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		private final int bitmap;
+		private final Object[] array;
+
+		public BitmapNode(int bitmap, Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		public Object find(int shift, int hash, Object key) {
+			int bit = bitpos(hash, shift);
+			if ((bitmap & bit) == 0) {
+				return NOT_FOUND;
+			}
+			int idx = index(bit);
+			Object keyOrNull = array[2 * idx];
+			Object valOrNode = array[2 * idx + 1];
+			if (keyOrNull == null) {
+				return ((Node) valOrNode).find(shift + BITS, hash, key);
+			}
+			return key.equals(keyOrNull) ? valOrNode : NOT_FOUND;
+		}
+
+		@Override
+		public Node plus(int shift, int hash, Object key, Object value, Change change) {
+			int bit = bitpos(hash, shift);
+			int idx = index(bit);
+			if ((bitmap & bit) == 0) {
+				var newArray = new Object[array.length + 2];
+				System.arraycopy(array, 0, newArray, 0, 2 * idx);
+				newArray[2 * idx] = key;
+				newArray[2 * idx + 1] = value;
+				System.arraycopy(array, 2 * idx, newArray, 2 * idx + 2, array.length - 2 * idx);
+				return new BitmapNode(bitmap | bit, newArray);
+			}
+			Object keyOrNull = array[2 * idx];
+			Object valOrNode = array[2 * idx + 1];
+			if (keyOrNull == null) {
+				Node child = ((Node) valOrNode).plus(shift + BITS, hash, key, value, change);
+				return child == valOrNode ? this : with(2 * idx + 1, null, child);
+			}
+			if (key.equals(keyOrNull)) {
+				change.oldValue = valOrNode;
+				return Objects.equals(value, valOrNode) ? this : with(2 * idx + 1, keyOrNull, value);
+			}
+			Node child = pair(shift + BITS, spread(keyOrNull.hashCode()), keyOrNull, valOrNode, hash, key, value);
+			return with(2 * idx + 1, null, child);
+		}
+
+		/**
+		 * Returns a copy of this node with the given key and value at the given
+		 * value position.
+		 */
+		private BitmapNode with(int valueIdx, Object key, Object value) {
+			var newArray = array.clone();
+			newArray[valueIdx - 1] = key;
+			newArray[valueIdx] = value;
+			return new BitmapNode(bitmap, newArray);
+		}
+
+		private static Node pair(int shift, int hash1, Object key1, Object value1, int hash2, Object key2,
+				Object value2) {
+			if (hash1 == hash2) {
+				return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+			}
+			var change = new Change();
+			return EMPTY.plus(shift, hash1, key1, value1, change).plus(shift, hash2, key2, value2, change);
+		}
+
+		@Override
+		public Node minus(int shift, int hash, Object key, Change change) {
+			int bit = bitpos(hash, shift);
+			if ((bitmap & bit) == 0) {
+				return this;
+			}
+			int idx = index(bit);
+			Object keyOrNull = array[2 * idx];
+			Object valOrNode = array[2 * idx + 1];
+			if (keyOrNull == null) {
+				Node child = ((Node) valOrNode).minus(shift + BITS, hash, key, change);
+				if (child == valOrNode) {
+					return this;
+				} else if (child != null) {
+					return with(2 * idx + 1, null, child);
+				}
+			} else if (key.equals(keyOrNull)) {
+				change.oldValue = valOrNode;
+			} else {
+				return this;
+			}
+			if (bitmap == bit) {
+				return null;
+			}
+			var newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, 2 * idx);
+			System.arraycopy(array, 2 * idx + 2, newArray, 2 * idx, newArray.length - 2 * idx);
+			return new BitmapNode(bitmap ^ bit, newArray);
+		}
+
+		@Override
+		public void forEach(BiConsumer<Object, Object> action) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (array[i] == null) {
+					((Node) array[i + 1]).forEach(action);
+				} else {
+					action.accept(array[i], array[i + 1]);
+				}
+			}
+		}
+
+		@Override
+		public Object[] array() {
+			return array;
+		}
+	}
+
+	/**
+	 * A node holding the entries whose keys have the same hash.
+	 */
+	private static final class CollisionNode extends Node {
+		private final int hash;
+		private final Object[] array;
+
+		public CollisionNode(int hash, Object[] array) {
+			this.hash = hash;
+			this.array = array;
+		}
+
+		private int indexOf(Object key) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public Object find(int shift, int hash, Object key) {
+			if (hash != this.hash) {
+				return NOT_FOUND;
+			}
+			int i = indexOf(key);
+			return i < 0 ? NOT_FOUND : array[i + 1];
+		}
+
+		@Override
+		public Node plus(int shift, int hash, Object key, Object value, Change change) {
+			if (hash != this.hash) {
+				var parent = new BitmapNode(bitpos(this.hash, shift), new Object[] { null, this });
+				return parent.plus(shift, hash, key, value, change);
+			}
+			int i = indexOf(key);
+			if (i >= 0) {
+				change.oldValue = array[i + 1];
+				if (Objects.equals(value, array[i + 1])) {
+					return this;
+				}
+				var newArray = array.clone();
+				newArray[i + 1] = value;
+				return new CollisionNode(hash, newArray);
+			}
+			var newArray = new Object[array.length + 2];
+			System.arraycopy(array, 0, newArray, 0, array.length);
+			newArray[array.length] = key;
+			newArray[array.length + 1] = value;
+			return new CollisionNode(hash, newArray);
+		}
+
+		@Override
+		public Node minus(int shift, int hash, Object key, Change change) {
+			int i = hash == this.hash ? indexOf(key) : -1;
+			if (i < 0) {
+				return this;
+			}
+			change.oldValue = array[i + 1];
+			if (array.length == 2) {
+				return null;
+			}
+			var newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, i);
+			System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+			return new CollisionNode(hash, newArray);
+		}
+
+		@Override
+		public void forEach(BiConsumer<Object, Object> action) {
+			for (int i = 0; i < array.length; i += 2) {
+				action.accept(array[i], array[i + 1]);
+			}
+		}
+
+		@Override
+		public Object[] array() {
+			return array;
+		}
+	}
+
+	/**
+	 * Iterates over the entries of a trie, depth first.
+	 */
+	private static class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+		/**
+		 * The arrays of the nodes on the path to the next entry, and the
+		 * positions in them. A trie over 32-bit hashes has at most 8 levels,
+		 * including a level of collision nodes.
+		 */
+		private final Object[][] arrays = new Object[8][];
+		private final int[] positions = new int[8];
+		private int depth = -1;
+
+		public EntryIterator(Node root) {
+			if (root != null) {
+				push(root);
+				advance();
+			}
+		}
+
+		private void push(Node node) {
+			++depth;
+			arrays[depth] = node.array();
+			positions[depth] = 0;
+		}
+
+		/**
+		 * Moves to the next entry, descending into child nodes as needed.
+		 */
+		private void advance() {
+			while (depth >= 0) {
+				Object[] array = arrays[depth];
+				int pos = positions[depth];
+				if (pos >= array.length) {
+					arrays[depth] = null;
+					--depth;
+				} else if (array[pos] == null) {
+					positions[depth] = pos + 2;
+					push((Node) array[pos + 1]);
+				} else {
+					return;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return depth >= 0;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Map.Entry<K, V> next() {
+			if (depth < 0) {
+				throw new NoSuchElementException();
+			}
+			Object[] array = arrays[depth];
+			int pos = positions[depth];
+			positions[depth] = pos + 2;
+			var result = new AbstractMap.SimpleImmutableEntry<>((K) array[pos], (V) array[pos + 1]);
+			advance();
+			return result;
+		}
+	}
+}
\ No newline at end of file
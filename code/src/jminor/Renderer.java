@@ -11,7 +11,11 @@ import bgu.cs.util.treeGrammar.Node;
 public class Renderer {
 	private static STHierarchyRenderer hrenderer = new STHierarchyRenderer(Renderer.class, "JminorSemantics.stg");
 
-	public static String render(Node n) {
+	/**
+	 * Synchronized, since template groups are loaded lazily and are not safe for
+	 * concurrent use.
+	 */
+	public static synchronized String render(Node n) {
 		return hrenderer.render(n);
 	}
 }
\ No newline at end of file
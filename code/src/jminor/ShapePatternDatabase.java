@@ -0,0 +1,519 @@
+package jminor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import bgu.cs.util.treeGrammar.Node;
+
+/**
+ * A pattern database for heuristic estimates of the distance between stores
+ * and goal stores.<br>
+ * The underlying abstraction projects a store onto the shape of (a subset of)
+ * its reference variables, i.e., whether each variable is uninitialized, null,
+ * or non-null. The graph of the abstract transitions of all statements is
+ * built once, stored in primitive arrays, and shared by all examples of a
+ * problem. For each goal pattern, the distances to the abstract goal states
+ * are computed by a backward breadth-first search and cached.<br>
+ * Since abstract transitions over-approximate the concrete ones, the
+ * distances are admissible and consistent estimates.
+ *
+ * @author romanm
+ */
+public class ShapePatternDatabase {
+	private static final int UNINIT = 0;
+	private static final int NULL = 1;
+	private static final int NONNULL = 2;
+
+	/**
+	 * Stands for the right-hand side of an assignment that may be either null or
+	 * non-null.
+	 */
+	private static final int ANY = -1;
+
+	/**
+	 * The distance stored for abstract states from which the goal is
+	 * unreachable.
+	 */
+	private static final byte UNREACHABLE = Byte.MAX_VALUE;
+
+	/**
+	 * The maximal number of projected variables assigned by a single statement,
+	 * which bounds the number of abstract successors to 2^MAX_ASSIGNED_VARS.
+	 */
+	private static final int MAX_ASSIGNED_VARS = 16;
+
+	/**
+	 * The maximal number of distance tables kept at the same time.
+	 */
+	private static final int MAX_TABLES = 64;
+
+	protected final JminorSemantics semantics;
+
+	/**
+	 * Bounds the number of abstract states and the number of abstract
+	 * transitions.
+	 */
+	protected final int maxEntries;
+
+	/**
+	 * Bounds the time of building the abstract transition graph.
+	 */
+	protected final long maxBuildMillis;
+
+	/**
+	 * The projected variables.
+	 */
+	private RefVar[] vars;
+	private Map<Var, Integer> varToIndex;
+	private int[] powers;
+	private int numStates;
+
+	/**
+	 * The predecessors of each abstract state s are
+	 * preds[predOffsets[s]...predOffsets[s+1]-1].
+	 */
+	private int[] predOffsets;
+	private int[] preds;
+
+	private boolean built = false;
+	private boolean available = false;
+
+	/**
+	 * The statement that the abstraction does not support, if any.
+	 */
+	private Stmt unsupportedStmt = null;
+
+	/**
+	 * A description of the outcome of the build, or null if the database has not
+	 * been built.
+	 */
+	private String status = null;
+
+	private final Map<Long, byte[]> goalToDistances = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > MAX_TABLES;
+		}
+	};
+
+	public ShapePatternDatabase(JminorSemantics semantics, int maxEntries, long maxBuildMillis) {
+		this.semantics = semantics;
+		this.maxEntries = maxEntries;
+		this.maxBuildMillis = maxBuildMillis;
+	}
+
+	/**
+	 * Returns the distance table for the given goal store or null if the database
+	 * cannot provide estimates for it.
+	 */
+	public synchronized byte[] distances(JmStore goal) {
+		if (!built) {
+			built = true;
+			available = build();
+		}
+		if (!available) {
+			return null;
+		}
+		long pattern = goalPattern(goal);
+		if (pattern == 0) {
+			return null;
+		}
+		byte[] result = goalToDistances.get(pattern);
+		if (result == null) {
+			result = computeDistances(pattern);
+			goalToDistances.put(pattern, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a description of the outcome of building the database, which
+	 * explains why it is disabled if it is, or null if the database has not been
+	 * built yet. The database is built on the first request for distances.
+	 */
+	public synchronized String status() {
+		return status;
+	}
+
+	/**
+	 * Returns a lower bound on the number of statements needed to reach a store
+	 * matching the goal, using the distance table of the goal.
+	 */
+	public float estimate(byte[] distances, JmStore store) {
+		byte distance = distances[abstractState(store)];
+		return distance == UNREACHABLE ? Float.MAX_VALUE : distance;
+	}
+
+	private int abstractState(JmStore store) {
+		int result = 0;
+		for (int i = 0; i < vars.length; ++i) {
+			result += status(store.eval(vars[i])) * powers[i];
+		}
+		return result;
+	}
+
+	private static int status(Val val) {
+		if (val == null) {
+			return UNINIT;
+		} else if (val == Obj.NULL) {
+			return NULL;
+		} else {
+			return NONNULL;
+		}
+	}
+
+	/**
+	 * Encodes the constraints that the given goal store places on the projected
+	 * variables, using two bits per variable.
+	 */
+	private long goalPattern(JmStore goal) {
+		long result = 0;
+		for (int i = 0; i < vars.length; ++i) {
+			Val val = goal.getEnvMap().get(vars[i]);
+			if (val != null) {
+				result |= ((long) status(val)) << (2 * i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The outcomes of building the abstract transition graph over a given
+	 * number of projected variables.
+	 */
+	private static enum BuildResult {
+		OK("built"),
+		UNSUPPORTED_STMT("a statement is not supported by the abstraction"),
+		TOO_MANY_ASSIGNED_VARS("a statement assigns more than " + MAX_ASSIGNED_VARS + " projected variables"),
+		TOO_MANY_TRANSITIONS("the number of abstract transitions exceeds the bound on entries"),
+		TIMEOUT("the build time exceeds the bound");
+
+		public final String description;
+
+		private BuildResult(String description) {
+			this.description = description;
+		}
+
+		/**
+		 * Indicates whether projecting onto fewer variables may succeed.
+		 */
+		public boolean retry() {
+			return this == TOO_MANY_ASSIGNED_VARS || this == TOO_MANY_TRANSITIONS;
+		}
+	}
+
+	/**
+	 * Builds the abstract transition graph over as many reference variables as
+	 * the bound on entries allows, backing off to fewer variables when there
+	 * are too many abstract transitions or assigned variables. Records the
+	 * outcome, and the reason when the database is disabled, in the status.
+	 */
+	private boolean build() {
+		long deadline = System.currentTimeMillis() + maxBuildMillis;
+		int numVars = 0;
+		long size = 1;
+		while (numVars < semantics.refVars.size() && numVars < 31 && size * 3 <= maxEntries) {
+			++numVars;
+			size *= 3;
+		}
+		if (numVars == 0) {
+			status = "disabled: no reference variables to project onto";
+			return false;
+		}
+		int maxVars = numVars;
+		BuildResult lastFailure = null;
+		for (; numVars > 0; --numVars) {
+			var result = build(numVars, deadline);
+			if (result == BuildResult.OK) {
+				status = "built over " + numVars + " of " + semantics.refVars.size() + " reference variables with "
+						+ preds.length + " abstract transitions";
+				if (lastFailure != null) {
+					status += ", after backing off from " + maxVars + " variables since " + lastFailure.description;
+				}
+				return true;
+			} else if (!result.retry() || numVars == 1) {
+				status = "disabled: " + result.description
+						+ (result == BuildResult.UNSUPPORTED_STMT ? " (" + unsupportedStmt + ")" : "");
+				return false;
+			}
+			lastFailure = result;
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the abstract transition graph over the first given number of
+	 * reference variables.
+	 */
+	private BuildResult build(int numVars, long deadline) {
+		var projected = semantics.refVars.subList(0, numVars);
+		int size = 1;
+		for (int i = 0; i < numVars; ++i) {
+			size *= 3;
+		}
+		vars = projected.toArray(new RefVar[projected.size()]);
+		varToIndex = new HashMap<>();
+		powers = new int[vars.length];
+		for (int i = 0; i < vars.length; ++i) {
+			varToIndex.put(vars[i], i);
+			powers[i] = i == 0 ? 1 : powers[i - 1] * 3;
+		}
+		numStates = size;
+
+		var abstractStmts = new ArrayList<AbstractStmt>();
+		int maxAssigned = 0;
+		for (var stmt : semantics.stmts) {
+			var abstractStmt = abstractStmt(stmt);
+			if (abstractStmt == null) {
+				unsupportedStmt = stmt;
+				return BuildResult.UNSUPPORTED_STMT;
+			} else if (abstractStmt.lhs.length > MAX_ASSIGNED_VARS) {
+				return BuildResult.TOO_MANY_ASSIGNED_VARS;
+			}
+			if (abstractStmt.lhs.length > 0 && !abstractStmts.contains(abstractStmt)) {
+				abstractStmts.add(abstractStmt);
+				maxAssigned = Math.max(maxAssigned, abstractStmt.lhs.length);
+			}
+		}
+
+		// Collect the transitions in reverse, as (target, source) pairs.
+		int[] targets = new int[Math.min(maxEntries, 1024)];
+		int[] sources = new int[targets.length];
+		int numEdges = 0;
+		int[] succs = new int[1 << maxAssigned];
+		for (int s = 0; s < numStates; ++s) {
+			if ((s & 0xfff) == 0 && System.currentTimeMillis() > deadline) {
+				return BuildResult.TIMEOUT;
+			}
+			for (var stmt : abstractStmts) {
+				int numSuccs = stmt.apply(s, succs);
+				for (int i = 0; i < numSuccs; ++i) {
+					if (succs[i] == s) {
+						continue;
+					}
+					if (numEdges == targets.length) {
+						if (numEdges >= maxEntries) {
+							return BuildResult.TOO_MANY_TRANSITIONS;
+						}
+						int newLength = (int) Math.min((long) numEdges * 2, maxEntries);
+						targets = Arrays.copyOf(targets, newLength);
+						sources = Arrays.copyOf(sources, newLength);
+					}
+					targets[numEdges] = succs[i];
+					sources[numEdges] = s;
+					++numEdges;
+				}
+			}
+		}
+
+		predOffsets = new int[numStates + 1];
+		for (int i = 0; i < numEdges; ++i) {
+			++predOffsets[targets[i] + 1];
+		}
+		for (int s = 0; s < numStates; ++s) {
+			predOffsets[s + 1] += predOffsets[s];
+		}
+		preds = new int[numEdges];
+		int[] fill = Arrays.copyOf(predOffsets, numStates);
+		for (int i = 0; i < numEdges; ++i) {
+			preds[fill[targets[i]]++] = sources[i];
+		}
+		return BuildResult.OK;
+	}
+
+	private byte[] computeDistances(long pattern) {
+		byte[] result = new byte[numStates];
+		Arrays.fill(result, UNREACHABLE);
+		int[] queue = new int[numStates];
+		int head = 0;
+		int tail = 0;
+		for (int s = 0; s < numStates; ++s) {
+			if (matches(s, pattern)) {
+				result[s] = 0;
+				queue[tail++] = s;
+			}
+		}
+		while (head < tail) {
+			int s = queue[head++];
+			// Larger distances are truncated, which keeps them admissible.
+			byte distance = (byte) Math.min(result[s] + 1, UNREACHABLE - 1);
+			for (int i = predOffsets[s]; i < predOffsets[s + 1]; ++i) {
+				int pred = preds[i];
+				if (result[pred] == UNREACHABLE) {
+					result[pred] = distance;
+					queue[tail++] = pred;
+				}
+			}
+		}
+		return result;
+	}
+
+	private boolean matches(int state, long pattern) {
+		for (int i = 0; i < vars.length; ++i) {
+			int required = (int) (pattern >>> (2 * i)) & 3;
+			if (required != UNINIT && (state / powers[i]) % 3 != required) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the abstraction of the given statement or null if the statement is
+	 * not supported by the abstraction.
+	 */
+	private AbstractStmt abstractStmt(Stmt stmt) {
+		List<Node> lhs = new ArrayList<>();
+		List<Node> rhs = new ArrayList<>();
+		if (stmt instanceof AssignStmt) {
+			var assign = (AssignStmt) stmt;
+			lhs.add(assign.getLhs());
+			rhs.add(assign.getRhs());
+		} else if (stmt instanceof ParallelAssign) {
+			var assign = (ParallelAssign) stmt;
+			lhs.addAll(assign.lvals().getArgs());
+			rhs.addAll(assign.rvals().getArgs());
+		} else if (stmt instanceof SkipStmt) {
+			// Nothing to do.
+		} else {
+			return null;
+		}
+
+		var result = new AbstractStmt();
+		var assignedVars = new ArrayList<Integer>();
+		var assignedVals = new ArrayList<Integer>();
+		for (int i = 0; i < lhs.size(); ++i) {
+			Node lnode = lhs.get(i);
+			Node rnode = rhs.get(i);
+			addRequirements(rnode, result);
+			if (lnode instanceof DerefExpr) {
+				addRequirements(((DerefExpr) lnode).getLhs(), result);
+				result.mustBeNonNull.add(baseIndex(((DerefExpr) lnode).getLhs()));
+			} else if (lnode instanceof VarExpr) {
+				Integer index = varToIndex.get(((VarExpr) lnode).getVar());
+				if (index != null) {
+					assignedVars.add(index);
+					assignedVals.add(rhsVal(rnode));
+				}
+			}
+		}
+		result.mustBeNonNull.removeIf(Objects::isNull);
+		result.mustBeInit.removeIf(Objects::isNull);
+		result.lhs = assignedVars.stream().mapToInt(Integer::intValue).toArray();
+		result.rhs = assignedVals.stream().mapToInt(Integer::intValue).toArray();
+		return result;
+	}
+
+	/**
+	 * Adds the requirements for a successful evaluation of the given expression.
+	 */
+	private void addRequirements(Node expr, AbstractStmt stmt) {
+		if (expr instanceof VarExpr) {
+			stmt.mustBeInit.add(varToIndex.get(((VarExpr) expr).getVar()));
+		} else if (expr instanceof DerefExpr) {
+			var base = ((DerefExpr) expr).getLhs();
+			addRequirements(base, stmt);
+			stmt.mustBeNonNull.add(baseIndex(base));
+		} else {
+			for (var sub : expr.getArgs()) {
+				addRequirements(sub, stmt);
+			}
+		}
+	}
+
+	private Integer baseIndex(Node base) {
+		return base instanceof VarExpr ? varToIndex.get(((VarExpr) base).getVar()) : null;
+	}
+
+	/**
+	 * Encodes the abstract value of the given right-hand side: either a status,
+	 * ANY, or -(i+2) for a copy of the i-th projected variable.
+	 */
+	private int rhsVal(Node rhs) {
+		if (rhs instanceof NullExpr) {
+			return NULL;
+		} else if (rhs instanceof NewExpr) {
+			return NONNULL;
+		} else if (rhs instanceof VarExpr) {
+			Integer index = varToIndex.get(((VarExpr) rhs).getVar());
+			return index != null ? -(index + 2) : ANY;
+		} else {
+			return ANY;
+		}
+	}
+
+	/**
+	 * The abstraction of a (parallel) assignment.
+	 */
+	private class AbstractStmt {
+		public final List<Integer> mustBeInit = new ArrayList<>();
+		public final List<Integer> mustBeNonNull = new ArrayList<>();
+		public int[] lhs;
+		public int[] rhs;
+
+		/**
+		 * Stores the abstract successors of the given abstract state in the given
+		 * array and returns their number.
+		 */
+		public int apply(int state, int[] succs) {
+			for (int index : mustBeInit) {
+				if (get(state, index) == UNINIT) {
+					return 0;
+				}
+			}
+			for (int index : mustBeNonNull) {
+				if (get(state, index) != NONNULL) {
+					return 0;
+				}
+			}
+			// Values are read from the pre-state.
+			int base = state;
+			for (int i = 0; i < lhs.length; ++i) {
+				base -= get(state, lhs[i]) * powers[lhs[i]];
+			}
+			int numSuccs = 1;
+			succs[0] = base;
+			for (int i = 0; i < lhs.length; ++i) {
+				int val = rhs[i] <= -2 ? get(state, -rhs[i] - 2) : rhs[i];
+				if (val == ANY) {
+					for (int j = 0; j < numSuccs; ++j) {
+						succs[numSuccs + j] = succs[j] + NULL * powers[lhs[i]];
+						succs[j] += NONNULL * powers[lhs[i]];
+					}
+					numSuccs *= 2;
+				} else {
+					for (int j = 0; j < numSuccs; ++j) {
+						succs[j] += val * powers[lhs[i]];
+					}
+				}
+			}
+			return numSuccs;
+		}
+
+		private int get(int state, int index) {
+			return (state / powers[index]) % 3;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof ShapePatternDatabase.AbstractStmt)) {
+				return false;
+			}
+			var other = (AbstractStmt) o;
+			return mustBeInit.equals(other.mustBeInit) && mustBeNonNull.equals(other.mustBeNonNull)
+					&& Arrays.equals(lhs, other.lhs) && Arrays.equals(rhs, other.rhs);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(lhs) * 31 + Arrays.hashCode(rhs);
+		}
+	}
+}
\ No newline at end of file
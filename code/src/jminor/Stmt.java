@@ -31,7 +31,8 @@ public abstract class Stmt extends Node implements Cmd {
 	 * Tests whether this statement can be applied to the given store.
 	 */
 	public boolean enabled(JmStore store) {
-		JmStore result = JminorInterpreter.v.run(this, store, JminorInterpreter.v.guessMaxSteps(this, store)).get();
+		var interpreter = JminorInterpreter.local();
+		JmStore result = interpreter.run(this, store, interpreter.guessMaxSteps(this, store)).get();
 		return !(result instanceof JmStore.JmErrorStore);
 	}
 
@@ -0,0 +1,148 @@
+package jminor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import bgu.cs.util.treeGrammar.Node;
+
+/**
+ * The cells that a statement may read and write, where a cell is a variable, a
+ * field (standing for that field of every object, which accounts for
+ * aliasing), or one of the {@link Resource}s below. The enabledness of a
+ * statement and the store it results in depend only on the cells it reads, so
+ * two statements whose footprints do not conflict commute and do not enable or
+ * disable one another.
+ *
+ * @author romanm
+ */
+public class StmtFootprint {
+	/**
+	 * Parts of the store that statements access implicitly.
+	 */
+	public static enum Resource {
+		/**
+		 * The shape of the heap. Statements that assign references fail when they
+		 * leave garbage, which depends on all references of the store, and they
+		 * change which objects are garbage.
+		 */
+		HEAP,
+
+		/**
+		 * The pool of free objects used by allocations.
+		 */
+		ALLOCATOR
+	}
+
+	public final Set<Object> reads = new HashSet<>();
+	public final Set<Object> writes = new HashSet<>();
+
+	/**
+	 * Indicates that the statement contains constructs that this analysis does
+	 * not handle, in which case it should be assumed to access all cells.
+	 */
+	public boolean unknown = false;
+
+	/**
+	 * Computes the footprint of the given statement.
+	 */
+	public static StmtFootprint of(Stmt stmt) {
+		var result = new StmtFootprint();
+		result.addStmt(stmt);
+		return result;
+	}
+
+	/**
+	 * Checks whether executing this statement and the given one in either order
+	 * may yield different results, or whether one of them may enable or disable
+	 * the other.
+	 */
+	public boolean conflictsWith(StmtFootprint other) {
+		return unknown || other.unknown || intersect(writes, other.reads) || intersect(writes, other.writes)
+				|| intersect(other.writes, reads);
+	}
+
+	private void addStmt(Node stmt) {
+		if (stmt instanceof AssignStmt) {
+			var assign = (AssignStmt) stmt;
+			addExpr(assign.getRhs());
+			addLval(assign.getLhs());
+		} else if (stmt instanceof ParallelAssign) {
+			// The targets are treated as both read and written, which also covers
+			// interpreting either list as the assigned one.
+			var parallel = (ParallelAssign) stmt;
+			for (var lists : parallel.getArgs()) {
+				for (var expr : lists.getArgs()) {
+					addExpr(expr);
+					addLval(expr);
+				}
+			}
+		} else if (stmt instanceof SeqStmt || stmt instanceof IfStmt || stmt instanceof WhileStmt) {
+			for (var arg : stmt.getArgs()) {
+				if (arg instanceof Stmt) {
+					addStmt(arg);
+				} else {
+					addExpr(arg);
+				}
+			}
+		} else if (!(stmt instanceof SkipStmt) && !(stmt instanceof RetStmt)) {
+			unknown = true;
+		}
+	}
+
+	private void addLval(Node lval) {
+		if (lval instanceof VarExpr) {
+			var var = ((VarExpr) lval).getVar();
+			writes.add(var);
+			if (var.getType() instanceof RefType) {
+				addHeapWrite();
+			}
+		} else if (lval instanceof DerefExpr) {
+			var deref = (DerefExpr) lval;
+			addExpr(deref.getLhs());
+			writes.add(deref.getField());
+			if (deref.getField().dstType instanceof RefType) {
+				addHeapWrite();
+			}
+		} else {
+			unknown = true;
+		}
+	}
+
+	private void addExpr(Node expr) {
+		if (expr instanceof VarExpr) {
+			reads.add(((VarExpr) expr).getVar());
+		} else if (expr instanceof DerefExpr) {
+			var deref = (DerefExpr) expr;
+			addExpr(deref.getLhs());
+			reads.add(deref.getField());
+		} else if (expr instanceof NewExpr) {
+			reads.add(Resource.ALLOCATOR);
+			writes.add(Resource.ALLOCATOR);
+		} else if (expr instanceof Stmt) {
+			unknown = true;
+		} else {
+			for (var arg : expr.getArgs()) {
+				addExpr(arg);
+			}
+		}
+	}
+
+	private void addHeapWrite() {
+		reads.add(Resource.HEAP);
+		writes.add(Resource.HEAP);
+	}
+
+	private static boolean intersect(Set<Object> first, Set<Object> second) {
+		for (var cell : first) {
+			if (second.contains(cell)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return unknown ? "unknown" : "reads " + reads + " writes " + writes;
+	}
+}
\ No newline at end of file
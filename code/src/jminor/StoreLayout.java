@@ -0,0 +1,229 @@
+package jminor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import bgu.cs.util.Union2;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import pexyn.Example;
+
+/**
+ * Assigns dense integer ids to the variables, fields, and objects of a problem,
+ * which index the arrays of {@link DenseJmStore}s, and encodes values as
+ * integers: objects by their ids (null by -1), integers by themselves, and
+ * Booleans by 0 and 1.<br>
+ * The ids are fixed when the layout is constructed, so a layout can be read
+ * by concurrent searches without synchronization.
+ *
+ * @author romanm
+ */
+public class StoreLayout {
+	/**
+	 * The kinds of values held by variables and fields.
+	 */
+	static final byte REF = 0, INT = 1, BOOL = 2;
+
+	public final Var[] vars;
+	public final Field[] fields;
+	public final Obj[] objs;
+
+	private final TObjectIntHashMap<Var> varIds;
+	private final TObjectIntHashMap<Field> fieldIds;
+	private final TObjectIntHashMap<Obj> objIds;
+
+	final byte[] varKinds;
+	final byte[] fieldKinds;
+
+	public StoreLayout(Collection<Var> vars, Collection<Field> fields, Collection<Obj> objs) {
+		this.vars = vars.toArray(new Var[vars.size()]);
+		this.fields = fields.toArray(new Field[fields.size()]);
+		this.objs = objs.toArray(new Obj[objs.size()]);
+		varIds = new TObjectIntHashMap<>(this.vars.length * 2, 0.5f, -1);
+		varKinds = new byte[this.vars.length];
+		for (int i = 0; i < this.vars.length; ++i) {
+			varIds.put(this.vars[i], i);
+			varKinds[i] = kind(this.vars[i].getType());
+		}
+		fieldIds = new TObjectIntHashMap<>(this.fields.length * 2, 0.5f, -1);
+		fieldKinds = new byte[this.fields.length];
+		for (int i = 0; i < this.fields.length; ++i) {
+			fieldIds.put(this.fields[i], i);
+			fieldKinds[i] = kind(this.fields[i].dstType);
+		}
+		objIds = new TObjectIntHashMap<>(this.objs.length * 2, 0.5f, -1);
+		for (int i = 0; i < this.objs.length; ++i) {
+			assert this.objs[i] != Obj.NULL;
+			objIds.put(this.objs[i], i);
+		}
+	}
+
+	/**
+	 * Creates a layout for the variables and fields of the given problem and
+	 * the objects appearing in its examples, including the free objects.
+	 */
+	public static StoreLayout of(JminorProblem problem) {
+		Set<Obj> objs = new LinkedHashSet<>();
+		for (Example<JmStore, Stmt> example : problem.examples) {
+			for (Union2<JmStore, Stmt> step : example) {
+				if (step.isT1()) {
+					collectObjects(step.getT1(), objs);
+				}
+			}
+		}
+		objs.remove(Obj.NULL);
+		return new StoreLayout(problem.semantics.vars, problem.semantics.fields, objs);
+	}
+
+	private static void collectObjects(JmStore store, Set<Obj> result) {
+		result.addAll(store.getObjects());
+		result.addAll(store.getFreeObjects());
+		for (Val val : store.getEnvMap().values()) {
+			if (val instanceof Obj) {
+				result.add((Obj) val);
+			}
+		}
+		for (Map.Entry<Obj, ? extends Map<Field, Val>> entry : store.heap.entrySet()) {
+			result.add(entry.getKey());
+			if (entry.getValue() != null) {
+				for (Val val : entry.getValue().values()) {
+					if (val instanceof Obj) {
+						result.add((Obj) val);
+					}
+				}
+			}
+		}
+	}
+
+	private static byte kind(Type type) {
+		if (type == IntType.v) {
+			return INT;
+		} else if (type instanceof BooleanType) {
+			return BOOL;
+		} else {
+			return REF;
+		}
+	}
+
+	/**
+	 * Returns the id of the given variable or -1 if it is not in the layout.
+	 */
+	public int varId(Var var) {
+		return varIds.get(var);
+	}
+
+	/**
+	 * Returns the id of the given field or -1 if it is not in the layout.
+	 */
+	public int fieldId(Field field) {
+		return fieldIds.get(field);
+	}
+
+	/**
+	 * Returns the id of the given object, or -1 for null and objects that are
+	 * not in the layout.
+	 */
+	public int objId(Obj obj) {
+		return objIds.get(obj);
+	}
+
+	/**
+	 * Returns the index of the heap cell of the given object and field, or -1
+	 * if either is not in the layout.
+	 */
+	public int cell(Obj obj, Field field) {
+		int objId = objIds.get(obj);
+		int fieldId = fieldIds.get(field);
+		return objId < 0 || fieldId < 0 ? -1 : objId * fields.length + fieldId;
+	}
+
+	/**
+	 * The number of heap cells.
+	 */
+	public int heapSize() {
+		return objs.length * fields.length;
+	}
+
+	public int encode(Val val) {
+		if (val instanceof Obj) {
+			if (val == Obj.NULL) {
+				return -1;
+			}
+			int result = objIds.get(val);
+			if (result < 0) {
+				throw new IllegalArgumentException("Object " + val + " is not in the store layout!");
+			}
+			return result;
+		} else if (val instanceof IntVal) {
+			return ((IntVal) val).num;
+		} else {
+			return ((BooleanVal) val).val ? 1 : 0;
+		}
+	}
+
+	public Val decode(byte kind, int code) {
+		switch (kind) {
+		case INT:
+			return new IntVal(code);
+		case BOOL:
+			return BooleanVal.get(code != 0);
+		default:
+			return code < 0 ? Obj.NULL : objs[code];
+		}
+	}
+
+	/**
+	 * Returns the objects with the ids in the given bitmap.
+	 */
+	List<Obj> objects(long[] bitmap) {
+		var result = new ArrayList<Obj>();
+		for (int i = nextSetBit(bitmap, 0); i >= 0; i = nextSetBit(bitmap, i + 1)) {
+			result.add(objs[i]);
+		}
+		return result;
+	}
+
+	static long[] newBitmap(int size) {
+		return new long[(size + 63) >>> 6];
+	}
+
+	static boolean testBit(long[] bitmap, int i) {
+		return (bitmap[i >>> 6] & (1L << i)) != 0;
+	}
+
+	static void setBit(long[] bitmap, int i) {
+		bitmap[i >>> 6] |= 1L << i;
+	}
+
+	static void clearBit(long[] bitmap, int i) {
+		bitmap[i >>> 6] &= ~(1L << i);
+	}
+
+	static int nextSetBit(long[] bitmap, int from) {
+		int word = from >>> 6;
+		if (word >= bitmap.length) {
+			return -1;
+		}
+		long bits = bitmap[word] & (-1L << from);
+		while (true) {
+			if (bits != 0) {
+				return (word << 6) + Long.numberOfTrailingZeros(bits);
+			}
+			if (++word == bitmap.length) {
+				return -1;
+			}
+			bits = bitmap[word];
+		}
+	}
+
+	static int cardinality(long[] bitmap) {
+		int result = 0;
+		for (long bits : bitmap) {
+			result += Long.bitCount(bits);
+		}
+		return result;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,360 @@
+package jminor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import jminor.JmStore.JmErrorStore;
+import pexyn.MatchGoal;
+import pexyn.planning.TR;
+import pexyn.planning.Transition;
+
+/**
+ * A transition relation that applies a partial-order reduction to another
+ * transition relation over Jminor statements, so that searches do not explore
+ * all the interleavings of statements that access disjoint cells.<br>
+ * When specialized for a goal store, the enabled actions of a store are
+ * restricted to a strong stubborn set: starting from the statements that
+ * write some cell whose value differs from the goal, the set is closed under
+ * adding the statements that conflict with an enabled member (see
+ * {@link StmtFootprint}) and the statements that write a cell read by a
+ * disabled member. Every path to a goal store then starts, up to reordering
+ * independent statements, with a statement of the set, so the reduction keeps
+ * all goal stores reachable and preserves the cost of optimal plans.
+ * Relations that are not specialized for a goal store are not reduced.
+ *
+ * @author romanm
+ */
+public class StubbornSetTR implements TR<JmStore, Stmt> {
+	protected final TR<JmStore, Stmt> tr;
+
+	private final Stmt[] stmts;
+	private final Map<Stmt, Integer> indices = new IdentityHashMap<>();
+
+	/**
+	 * The statements that may write each cell, which include the statements
+	 * with unknown footprints.
+	 */
+	private final Map<Object, int[]> writers = new HashMap<>();
+
+	/**
+	 * The statements with unknown footprints, which may write any cell.
+	 */
+	private final int[] unknownWriters;
+
+	/**
+	 * The statements that conflict with each statement.
+	 */
+	private final int[][] conflicting;
+
+	/**
+	 * The statements that write some cell read by each statement. Any path that
+	 * enables a disabled statement contains one of them.
+	 */
+	private final int[][] enablers;
+
+	/**
+	 * Constructs a reduction of the given transition relation, whose actions are
+	 * the statements of the given semantics.
+	 */
+	public StubbornSetTR(TR<JmStore, Stmt> tr, JminorSemantics semantics) {
+		this.tr = tr;
+		this.stmts = semantics.stmts.toArray(new Stmt[semantics.stmts.size()]);
+		var footprints = new StmtFootprint[this.stmts.length];
+		var cellWriters = new HashMap<Object, List<Integer>>();
+		var unknown = new ArrayList<Integer>();
+		for (int i = 0; i < this.stmts.length; ++i) {
+			indices.put(this.stmts[i], i);
+			footprints[i] = StmtFootprint.of(this.stmts[i]);
+			if (footprints[i].unknown) {
+				unknown.add(i);
+			}
+			for (var cell : footprints[i].writes) {
+				cellWriters.computeIfAbsent(cell, k -> new ArrayList<>()).add(i);
+			}
+		}
+		this.unknownWriters = toArray(unknown);
+		for (var entry : cellWriters.entrySet()) {
+			var cellList = entry.getValue();
+			for (var i : unknown) {
+				if (!cellList.contains(i)) {
+					cellList.add(i);
+				}
+			}
+			writers.put(entry.getKey(), toArray(cellList));
+		}
+
+		this.conflicting = new int[this.stmts.length][];
+		this.enablers = new int[this.stmts.length][];
+		var all = new ArrayList<Integer>(this.stmts.length);
+		for (int i = 0; i < this.stmts.length; ++i) {
+			all.add(i);
+		}
+		for (int i = 0; i < this.stmts.length; ++i) {
+			var conflicts = new ArrayList<Integer>();
+			for (int j = 0; j < this.stmts.length; ++j) {
+				if (j != i && footprints[i].conflictsWith(footprints[j])) {
+					conflicts.add(j);
+				}
+			}
+			conflicting[i] = toArray(conflicts);
+			if (footprints[i].unknown) {
+				enablers[i] = toArray(all);
+			} else {
+				var cellEnablers = new ArrayList<Integer>();
+				for (var cell : footprints[i].reads) {
+					for (var j : writers(cell)) {
+						if (!cellEnablers.contains(j)) {
+							cellEnablers.add(j);
+						}
+					}
+				}
+				enablers[i] = toArray(cellEnablers);
+			}
+		}
+	}
+
+	@Override
+	public Collection<Stmt> enabledActions(JmStore store) {
+		return tr.enabledActions(store);
+	}
+
+	@Override
+	public Collection<Stmt> candidateActions(JmStore store) {
+		return tr.candidateActions(store);
+	}
+
+	@Override
+	public Collection<Transition<JmStore, Stmt>> transitions(JmStore store, Collection<Stmt> actions) {
+		return tr.transitions(store, actions);
+	}
+
+	@Override
+	public Collection<Stmt> relevantActions(JmStore store, Collection<Stmt> enabled) {
+		return tr.relevantActions(store, enabled);
+	}
+
+	@Override
+	public float transitionCost(JmStore src, Stmt action, JmStore dst) {
+		return tr.transitionCost(src, action, dst);
+	}
+
+	@Override
+	public Collection<Transition<JmStore, Stmt>> successors(JmStore store) {
+		return tr.successors(store);
+	}
+
+	@Override
+	public Iterator<Transition<JmStore, Stmt>> successorsIterator(JmStore store) {
+		return tr.successorsIterator(store);
+	}
+
+	@Override
+	public Collection<JmStore> apply(JmStore store, Stmt action) {
+		return tr.apply(store, action);
+	}
+
+	@Override
+	public float estimateDistToGoal(JmStore store) {
+		return tr.estimateDistToGoal(store);
+	}
+
+	@Override
+	public long fingerprint(JmStore store, long seed) {
+		return tr.fingerprint(store, seed);
+	}
+
+	@Override
+	public TR<JmStore, Stmt> forGoal(Predicate<JmStore> goalTest) {
+		var goalTR = tr.forGoal(goalTest);
+		if (goalTest instanceof MatchGoal) {
+			return new GoalReducedTR(goalTR, (JmStore) ((MatchGoal<?>) goalTest).goal);
+		}
+		return goalTR == tr ? this : goalTR;
+	}
+
+	/**
+	 * Returns the statements that may write the given cell.
+	 */
+	protected int[] writers(Object cell) {
+		return writers.getOrDefault(cell, unknownWriters);
+	}
+
+	/**
+	 * Returns the cells whose values in the given store differ from the goal.
+	 * Every path to the goal contains a statement that writes each of them.
+	 */
+	protected List<Object> unsatisfiedCells(JmStore store, JmStore goal) {
+		var result = new ArrayList<Object>();
+		for (Map.Entry<Var, Val> entry : goal.getEnvMap().entrySet()) {
+			Var var = entry.getKey();
+			if (!store.isInitialized(var) || !BasicJminorTR.sameUpToRenaming(store, store.eval(var), entry.getValue())) {
+				result.add(var);
+			}
+		}
+		for (Obj obj : goal.getObjects()) {
+			if (store.canonicalEquality() && store.isAllocatable(obj)) {
+				// The corresponding object of the store is unknown.
+				continue;
+			}
+			for (Map.Entry<Field, Val> entry : goal.geFields(obj).entrySet()) {
+				Field field = entry.getKey();
+				if (!store.isInitialized(obj, field)
+						|| !BasicJminorTR.sameUpToRenaming(store, store.eval(obj, field), entry.getValue())) {
+					result.add(field);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Restricts the given enabled statements of the given store to a strong
+	 * stubborn set for reaching the given goal. Each unsatisfied cell of the goal
+	 * yields a stubborn set, and the one with the fewest enabled statements is
+	 * chosen.
+	 */
+	protected Collection<Stmt> reduce(JmStore store, JmStore goal, Collection<Stmt> enabled) {
+		if (store instanceof JmErrorStore || enabled.size() <= 1) {
+			return enabled;
+		}
+		var isEnabled = new boolean[stmts.length];
+		for (var stmt : enabled) {
+			var index = indices.get(stmt);
+			if (index == null) {
+				// The statement is unknown, so nothing can be said about it.
+				return enabled;
+			}
+			isEnabled[index] = true;
+		}
+		boolean[] inSet = null;
+		int minEnabled = enabled.size();
+		var worklist = new int[stmts.length];
+		var visitedCells = new HashSet<Object>();
+		for (var cell : unsatisfiedCells(store, goal)) {
+			if (!visitedCells.add(cell)) {
+				continue;
+			}
+			var cellSet = new boolean[stmts.length];
+			int cellEnabled = 0;
+			int worklistSize = 0;
+			for (int i : writers(cell)) {
+				cellSet[i] = true;
+				worklist[worklistSize++] = i;
+			}
+			while (worklistSize > 0 && cellEnabled < minEnabled) {
+				int i = worklist[--worklistSize];
+				if (isEnabled[i]) {
+					++cellEnabled;
+				}
+				for (int j : isEnabled[i] ? conflicting[i] : enablers[i]) {
+					if (!cellSet[j]) {
+						cellSet[j] = true;
+						worklist[worklistSize++] = j;
+					}
+				}
+			}
+			if (cellEnabled < minEnabled) {
+				inSet = cellSet;
+				minEnabled = cellEnabled;
+			}
+		}
+		if (inSet == null) {
+			return enabled;
+		}
+
+		var result = new ArrayList<Stmt>(minEnabled);
+		for (var stmt : enabled) {
+			if (inSet[indices.get(stmt)]) {
+				result.add(stmt);
+			}
+		}
+		return result;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		var result = new int[list.size()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = list.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * A reduced transition relation for reaching stores that match a given goal
+	 * store.
+	 *
+	 * @author romanm
+	 */
+	protected class GoalReducedTR implements TR<JmStore, Stmt> {
+		protected final TR<JmStore, Stmt> goalTR;
+		protected final JmStore goal;
+
+		public GoalReducedTR(TR<JmStore, Stmt> goalTR, JmStore goal) {
+			this.goalTR = goalTR;
+			this.goal = goal;
+		}
+
+		@Override
+		public Collection<Stmt> enabledActions(JmStore store) {
+			return relevantActions(store, goalTR.enabledActions(store));
+		}
+
+		@Override
+		public Collection<Stmt> candidateActions(JmStore store) {
+			return goalTR.candidateActions(store);
+		}
+
+		@Override
+		public Collection<Transition<JmStore, Stmt>> transitions(JmStore store, Collection<Stmt> actions) {
+			return goalTR.transitions(store, actions);
+		}
+
+		@Override
+		public Collection<Stmt> relevantActions(JmStore store, Collection<Stmt> enabled) {
+			return reduce(store, goal, goalTR.relevantActions(store, enabled));
+		}
+
+		@Override
+		public float transitionCost(JmStore src, Stmt action, JmStore dst) {
+			return goalTR.transitionCost(src, action, dst);
+		}
+
+		@Override
+		public Collection<Transition<JmStore, Stmt>> successors(JmStore store) {
+			var transitions = goalTR.successors(store);
+			return Transition.restrict(transitions, relevantActions(store, Transition.actions(transitions)));
+		}
+
+		@Override
+		public Collection<JmStore> apply(JmStore store, Stmt action) {
+			return goalTR.apply(store, action);
+		}
+
+		@Override
+		public float estimateDistToGoal(JmStore store) {
+			return goalTR.estimateDistToGoal(store);
+		}
+
+		@Override
+		public long fingerprint(JmStore store, long seed) {
+			return goalTR.fingerprint(store, seed);
+		}
+
+		@Override
+		public int prunedActions() {
+			return goalTR.prunedActions();
+		}
+
+		@Override
+		public TR<JmStore, Stmt> forGoal(Predicate<JmStore> goalTest) {
+			return StubbornSetTR.this.forGoal(goalTest);
+		}
+	}
+}
\ No newline at end of file
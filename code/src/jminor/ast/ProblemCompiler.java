@@ -28,6 +28,7 @@ import jminor.JminorSemantics;
 import jminor.NotExpr;
 import jminor.NullExpr;
 import jminor.Obj;
+import jminor.ObjectPool;
 import jminor.OrExpr;
 import jminor.PrimitiveField;
 import jminor.PrimitiveType;
@@ -521,6 +522,7 @@ public class ProblemCompiler {
 			}
 			Set<Obj> freeInputObjs = new HashSet<>(goalObjs);
 			freeInputObjs.removeAll(inputObjs);
+			var pool = new ObjectPool(freeInputObjs, false);
 
 			List<Union2<JmStore, Stmt>> steps = new ArrayList<>(exampleAST.steps.size());
 			var stmtBuilder = new StmtBuilder();
@@ -541,7 +543,7 @@ public class ProblemCompiler {
 							storeObjs.add(obj);
 						}
 					}
-					JmStore store = new StoreBuilder(storeObjs, freeInputObjs, storeAST).build();
+					JmStore store = new StoreBuilder(storeObjs, pool, storeAST).build();
 					steps.add(Union2.ofT1(store));
 				} else {
 					assert stepAST instanceof ASTStmt;
@@ -581,20 +583,20 @@ public class ProblemCompiler {
 		 */
 		public class StoreBuilder extends Visitor {
 			private final Set<Obj> objs;
-			private final Set<Obj> freeObjs;
+			private final ObjectPool pool;
 			private final ASTStore ast;
 			private final Map<Var, Val> env = new HashMap<>();
 			private final Map<Obj, Map<Field, Val>> heap = new HashMap<>();
 
-			public StoreBuilder(Set<Obj> objs, Set<Obj> freeObjs, ASTStore ast) {
+			public StoreBuilder(Set<Obj> objs, ObjectPool pool, ASTStore ast) {
 				this.objs = objs;
-				this.freeObjs = freeObjs;
+				this.pool = pool;
 				this.ast = ast;
 			}
 
 			public JmStore build() {
 				ast.accept(this);
-				return new JmStore(objs, freeObjs, env, heap);
+				return new JmStore(objs, pool, env, heap);
 			}
 
 			public void visit(ASTRefFieldVal n) {
@@ -18,6 +18,7 @@ import jminor.IntType;
 import jminor.IntVal;
 import jminor.PrimitiveVar;
 import jminor.Obj;
+import jminor.ObjectPool;
 import jminor.RefField;
 import jminor.RefType;
 import jminor.RefVar;
@@ -167,7 +168,7 @@ public class JavaHeapWalker {
 			}
 		}
 
-		JmStore result = new JmStore(resultHeap.keySet(), new HashSet<>(), resultEnv, resultHeap);
+		JmStore result = new JmStore(resultHeap.keySet(), new ObjectPool(), resultEnv, resultHeap);
 		return result;
 	}
 
@@ -2,6 +2,7 @@ package pexyn;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.UnaryOperator;
 
 /**
  * An implementation of a plan by a pair of {@link ArrayList}s.
@@ -41,6 +42,11 @@ public class ArrayListTrace<StateType, ActionType> implements Trace<StateType, A
 		this.states.add(node);
 	}
 
+	@Override
+	public void replaceStates(UnaryOperator<StateType> f) {
+		states.replaceAll(f);
+	}
+
 	@Override
 	public boolean isEmpty() {
 		return states.isEmpty();
@@ -1,7 +1,9 @@
 package pexyn;
 
+import java.io.File;
 import java.util.logging.Logger;
 
+import bgu.cs.util.FileUtils;
 import bgu.cs.util.HTMLPrinter;
 import bgu.cs.util.graph.MultiGraph.Edge;
 import bgu.cs.util.graph.visualization.EdgeDataProperties;
@@ -33,6 +35,33 @@ public abstract class GPDebugger<StoreType extends Store, CmdType extends Cmd, G
 		super(title, outputDirPath, logger);
 	}
 
+	// Messages may be sent by several threads, e.g., when examples are planned
+	// in parallel.
+
+	@Override
+	public synchronized void severe(String message) {
+		super.severe(message);
+	}
+
+	@Override
+	public synchronized void warning(String message) {
+		super.warning(message);
+	}
+
+	@Override
+	public synchronized void info(String message) {
+		super.info(message);
+	}
+
+	/**
+	 * Writes the given content as is, e.g., for consumption by other tools, to a
+	 * file with the given name in the output directory, and links to it.
+	 */
+	public synchronized boolean addDataFile(String fileName, String content, String description) {
+		FileUtils.stringToFile(content, outputDirPath + File.separator + fileName);
+		return addLink(fileName, description);
+	}
+
 	/**
 	 * Prints a plan.
 	 */
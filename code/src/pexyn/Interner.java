@@ -0,0 +1,52 @@
+package pexyn;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * A table of canonical representatives of immutable values, so that equal
+ * values can share a single instance and be compared by reference. Values are
+ * held by weak references, so a representative is discarded once it is no
+ * longer used outside the table.
+ *
+ * @author romanm
+ *
+ * @param <T>
+ *            The type of values, which must have consistent {@link #equals}
+ *            and {@link #hashCode} methods.
+ */
+public class Interner<T> {
+	private final WeakHashMap<T, WeakReference<T>> table = new WeakHashMap<>();
+
+	/**
+	 * Returns the representative of the given value, making the value itself
+	 * the representative if there is none.
+	 */
+	public T intern(T value) {
+		return intern(value, UnaryOperator.identity());
+	}
+
+	/**
+	 * Returns the representative of the given value. If there is none, the
+	 * given operator is applied to the value to obtain a new representative,
+	 * which must be equal to the value.
+	 */
+	public synchronized T intern(T value, UnaryOperator<T> prepare) {
+		WeakReference<T> ref = table.get(value);
+		T result = ref != null ? ref.get() : null;
+		if (result == null) {
+			result = prepare.apply(value);
+			assert result.equals(value);
+			table.put(result, new WeakReference<>(result));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of representatives.
+	 */
+	public synchronized int size() {
+		return table.size();
+	}
+}
\ No newline at end of file
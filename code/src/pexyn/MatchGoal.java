@@ -0,0 +1,40 @@
+package pexyn;
+
+import java.util.function.Predicate;
+
+import pexyn.Semantics.Store;
+
+/**
+ * A goal test satisfied by the stores that match a given (partial) goal store.
+ * Transition relations can inspect the goal store to compute goal-aware
+ * heuristics.
+ * 
+ * @author romanm
+ *
+ * @param <StoreType>
+ *            The type of stores.
+ */
+public class MatchGoal<StoreType extends Store> implements Predicate<StoreType> {
+	public final Semantics<StoreType, ?, ?> semantics;
+
+	/**
+	 * The store that the goal stores should match.
+	 */
+	public final StoreType goal;
+
+	/**
+	 * The test compiled for the goal store (see {@link Semantics#compileMatch}).
+	 */
+	private final Predicate<StoreType> compiled;
+
+	public MatchGoal(Semantics<StoreType, ?, ?> semantics, StoreType goal) {
+		this.semantics = semantics;
+		this.goal = goal;
+		this.compiled = semantics.compileMatch(goal);
+	}
+
+	@Override
+	public boolean test(StoreType store) {
+		return compiled.test(store);
+	}
+}
\ No newline at end of file
@@ -7,6 +7,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.apache.commons.configuration2.Configuration;
 
@@ -21,7 +29,11 @@ import pexyn.generalization.PETI;
 import pexyn.generalization.Result;
 import pexyn.guardInference.ConditionInferencer;
 import pexyn.guardInference.DTreeInferencer;
+import pexyn.planning.AnytimeAStar;
+import pexyn.planning.LockstepPlanner;
 import pexyn.planning.Planner;
+import pexyn.planning.PortfolioPlanner;
+import pexyn.planning.SearchResultType;
 
 /**
  * Synthesizes an {@link Automaton} from a list of examples by using the given
@@ -39,12 +51,39 @@ import pexyn.planning.Planner;
  *            The type of condition in the program.
  */
 public class PETISynthesizer<StoreType extends Store, CmdType extends Cmd, GuardType extends Guard> {
+	/**
+	 * Planning settings that do not affect the plans of single examples, and
+	 * are therefore left out of the context of cached plans.
+	 */
+	private static final Set<String> PLAN_CONTEXT_EXCLUDED = Set.of("pexyn.planning.parallelism",
+			"pexyn.planning.report", "pexyn.planning.lockstep");
+
 	public final int maxTraceLength;
 
 	private final Planner<StoreType, CmdType> planner;
 	private final Configuration config;
 	private final GPDebugger<StoreType, CmdType, GuardType> debugger;
 
+	/**
+	 * A persistent cache of the traces of examples, or null.
+	 */
+	private TraceCache<StoreType, CmdType> traceCache = null;
+
+	/**
+	 * A planner that looks for a plan shared by several examples, or null.
+	 */
+	private LockstepPlanner<StoreType, CmdType> lockstepPlanner = null;
+
+	/**
+	 * Accumulates the time spent on converting examples to plans, or null.
+	 */
+	private Timer planningTimer = null;
+
+	/**
+	 * The statistics of the most recent conversion of examples to plans.
+	 */
+	private PlanningReport planningReport = null;
+
 	public PETISynthesizer(Planner<StoreType, CmdType> planner, Configuration config,
 			GPDebugger<StoreType, CmdType, GuardType> debugger) {
 		assert planner != null;
@@ -52,10 +91,59 @@ public class PETISynthesizer<StoreType extends Store, CmdType extends Cmd, Guard
 		this.planner = planner;
 		this.debugger = debugger;
 		maxTraceLength = config.getInt("pexyn.maxTraceLength", 200);
+		if (planner instanceof AnytimeAStar) {
+			((AnytimeAStar<StoreType, CmdType>) planner).setImprovementListener(
+					plan -> debugger.info("Anytime search found a better plan with " + (plan.size() - 1) + " actions"));
+		} else if (planner instanceof PortfolioPlanner) {
+			var portfolio = (PortfolioPlanner<StoreType, CmdType>) planner;
+			portfolio.setWinListener((name, result) -> debugger
+					.info("Portfolio search won by " + name + " (" + result + "); wins: " + portfolio.winsSummary()));
+		}
+	}
+
+	/**
+	 * Sets a cache from which plans and reference-program traces are taken when
+	 * available, and to which new ones are added.
+	 */
+	public void setTraceCache(TraceCache<StoreType, CmdType> traceCache) {
+		this.traceCache = traceCache;
+	}
+
+	/**
+	 * Sets a planner that first looks for a single plan shared by all the
+	 * examples that consist of an input and a goal. The examples are planned
+	 * separately if there is no such plan.
+	 */
+	public void setLockstepPlanner(LockstepPlanner<StoreType, CmdType> lockstepPlanner) {
+		this.lockstepPlanner = lockstepPlanner;
+	}
+
+	/**
+	 * Sets a timer that accumulates the time spent on converting examples to
+	 * plans.
+	 */
+	public void setPlanningTimer(Timer planningTimer) {
+		this.planningTimer = planningTimer;
+	}
+
+	/**
+	 * Returns the statistics of the most recent conversion of examples to plans,
+	 * if there was one.
+	 */
+	public Optional<PlanningReport> planningReport() {
+		return Optional.ofNullable(planningReport);
 	}
 
 	public Result synthesize(SynthesisProblem<StoreType, CmdType, GuardType> problem) {
 		var exampleToPlan = genPlans(problem);
+		if (config.getBoolean("pexyn.internStates", true)) {
+			for (var plan : exampleToPlan.values()) {
+				plan.replaceStates(problem.semantics()::intern);
+			}
+		}
+		if (config.getBoolean("pexyn.planning.report", true)) {
+			debugger.addDataFile("planning.json", planningReport.toJson(), "Planning statistics");
+		}
 		var trainingPlans = new ArrayList<Trace<StoreType, CmdType>>();
 		exampleToPlan.forEach((example, plan) -> {
 			if (!example.isTest) {
@@ -89,43 +177,274 @@ public class PETISynthesizer<StoreType extends Store, CmdType extends Cmd, Guard
 	}
 
 	/**
-	 * Converts examples to plans.
+	 * Converts examples to plans. The examples are planned by up to
+	 * 'pexyn.planning.parallelism' threads (all available processors if it is
+	 * 0), and the plans are collected in the order of the examples. Examples
+	 * planned in lockstep (see {@link #setLockstepPlanner(LockstepPlanner)}) are
+	 * not planned again. The statistics of the searches are collected per
+	 * example (see {@link #planningReport()}).
 	 */
 	public Map<Example<StoreType, CmdType>, Trace<StoreType, CmdType>> genPlans(
 			SynthesisProblem<StoreType, CmdType, GuardType> problem) {
+		var report = new PlanningReport(planner.getClass().getName());
+		long start = System.nanoTime();
+		if (planningTimer != null) {
+			planningTimer.start();
+		}
+		try {
+			return genPlans(problem, report);
+		} finally {
+			if (planningTimer != null) {
+				planningTimer.stop();
+			}
+			report.planningMillis = (System.nanoTime() - start) / 1000000;
+			planningReport = report;
+			debugger.info(report.summary());
+		}
+	}
+
+	private Map<Example<StoreType, CmdType>, Trace<StoreType, CmdType>> genPlans(
+			SynthesisProblem<StoreType, CmdType, GuardType> problem, PlanningReport report) {
 		var exampleToPlan = new LinkedHashMap<Example<StoreType, CmdType>, Trace<StoreType, CmdType>>();
+		var entries = new HashMap<Example<StoreType, CmdType>, PlanningReport.ExampleEntry>();
 		for (Example<StoreType, CmdType> example : problem.examples) {
-			Optional<Trace<StoreType, CmdType>> optPlan;
+			entries.put(example, report.add(example.name));
+		}
+		var lockstepPlans = genLockstepPlans(problem, report);
+		for (var example : lockstepPlans.keySet()) {
+			entries.get(example).source = PlanningReport.Source.LOCKSTEP;
+		}
+		int parallelism = config.getInt("pexyn.planning.parallelism", 1);
+		if (parallelism <= 0) {
+			parallelism = Runtime.getRuntime().availableProcessors();
+		}
+		parallelism = Math.min(parallelism, problem.examples.size());
+		if (parallelism <= 1) {
+			for (Example<StoreType, CmdType> example : problem.examples) {
+				var lockstepPlan = lockstepPlans.get(example);
+				var entry = entries.get(example);
+				addPlan(example, lockstepPlan != null ? Optional.of(lockstepPlan) : genPlan(problem, example, entry),
+						exampleToPlan, entry);
+			}
+			return exampleToPlan;
+		}
+
+		debugger.info("Planning for " + problem.examples.size() + " examples with " + parallelism + " threads...");
+		var pool = new ForkJoinPool(parallelism);
+		try {
+			var futurePlans = new ArrayList<Future<Optional<Trace<StoreType, CmdType>>>>();
+			for (Example<StoreType, CmdType> example : problem.examples) {
+				var lockstepPlan = lockstepPlans.get(example);
+				if (lockstepPlan != null) {
+					futurePlans.add(CompletableFuture.completedFuture(Optional.of(lockstepPlan)));
+				} else {
+					var entry = entries.get(example);
+					futurePlans.add(pool.submit(() -> genPlan(problem, example, entry)));
+				}
+			}
+			for (int i = 0; i < futurePlans.size(); ++i) {
+				var example = problem.examples.get(i);
+				Optional<Trace<StoreType, CmdType>> optPlan;
+				try {
+					optPlan = futurePlans.get(i).get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new Error("Interrupted while planning for example " + example.name + "!", e);
+				} catch (ExecutionException e) {
+					var cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new Error(cause);
+				}
+				addPlan(example, optPlan, exampleToPlan, entries.get(example));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return exampleToPlan;
+	}
+
+	/**
+	 * Plans the examples that consist of an input and a goal, possibly followed by
+	 * statements, in lockstep, if a lockstep planner is set and there are at
+	 * least two such examples. The statements that follow the goal are applied
+	 * to the end of the shared plan.
+	 *
+	 * @return The plans of the examples, or an empty map if no shared plan was
+	 *         found.
+	 */
+	private Map<Example<StoreType, CmdType>, Trace<StoreType, CmdType>> genLockstepPlans(
+			SynthesisProblem<StoreType, CmdType, GuardType> problem, PlanningReport report) {
+		var result = new HashMap<Example<StoreType, CmdType>, Trace<StoreType, CmdType>>();
+		if (lockstepPlanner == null) {
+			return result;
+		}
+		var examples = new ArrayList<Example<StoreType, CmdType>>();
+		for (Example<StoreType, CmdType> example : problem.examples) {
+			if (example.size() >= 2 && example.step(1).isT1() && commandsFrom(example, 2)) {
+				examples.add(example);
+			}
+		}
+		if (examples.size() < 2) {
+			return result;
+		}
+
+		debugger.info("Planning for " + examples.size() + " examples in lockstep...");
+		var inputs = new ArrayList<StoreType>(examples.size());
+		var goals = new ArrayList<Predicate<StoreType>>(examples.size());
+		var plans = new ArrayList<Trace<StoreType, CmdType>>(examples.size());
+		for (var example : examples) {
+			inputs.add(example.input());
+			goals.add(new MatchGoal<>(problem.semantics(), example.step(1).getT1()));
+			plans.add(new ArrayListTrace<>(example.input()));
+		}
+		var planResult = lockstepPlanner.findPlans(inputs, goals, plans);
+		report.lockstep = lockstepPlanner.lastStatistics().orElse(null);
+		if (planResult == SearchResultType.OK) {
+			debugger.info("Found a shared plan of length " + plans.get(0).size());
+			for (int i = 0; i < examples.size(); ++i) {
+				var example = examples.get(i);
+				var plan = plans.get(i);
+				if (applyCommandsFrom(problem, example, 2, plan)) {
+					result.put(example, plan);
+				}
+			}
+		} else {
+			var stats = lockstepPlanner.lastStatistics();
+			debugger.info("No shared plan (" + planResult + (stats.isPresent() ? ", " + stats.get() : "")
+					+ "). Planning for the examples separately.");
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the steps of the given example from the given one on are
+	 * all statements.
+	 */
+	private static boolean commandsFrom(Example<?, ?> example, int from) {
+		for (int i = from; i < example.size(); ++i) {
+			if (example.step(i).isT1()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends to the given plan the statements of the given example from the
+	 * given step on.
+	 *
+	 * @return false if one of the statements is not applicable, in which case the
+	 *         example is left for planning separately.
+	 */
+	private boolean applyCommandsFrom(SynthesisProblem<StoreType, CmdType, GuardType> problem,
+			Example<StoreType, CmdType> example, int from, Trace<StoreType, CmdType> plan) {
+		for (int i = from; i < example.size(); ++i) {
+			CmdType action = example.step(i).getT2();
+			Optional<StoreType> next = problem.semantics().apply(action, plan.lastState());
+			if (!next.isPresent() || next.get() instanceof ErrorStore) {
+				return false;
+			}
+			plan.append(action, next.get());
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the context of cached plans: the planner class and the settings
+	 * that may affect the plans it finds, which are the planner and planning
+	 * settings, and the settings of the semantics, except for the ones that
+	 * only affect how the examples are scheduled, reported, or turned into
+	 * code.
+	 */
+	private String planContext() {
+		var settings = new TreeMap<String, String>();
+		for (var keys = config.getKeys(); keys.hasNext();) {
+			var key = keys.next();
+			boolean relevant = key.equals("pexyn.planner")
+					|| key.startsWith("pexyn.planning.") && !PLAN_CONTEXT_EXCLUDED.contains(key)
+					|| key.startsWith("jminor.") && !key.startsWith("jminor.generate");
+			if (relevant) {
+				settings.put(key, String.valueOf(config.getProperty(key)));
+			}
+		}
+		return "plan:" + planner.getClass().getName() + settings;
+	}
+
+	/**
+	 * Converts an example to a plan, and records the statistics of doing so in
+	 * the given entry. Can be called concurrently for different examples.
+	 */
+	private Optional<Trace<StoreType, CmdType>> genPlan(SynthesisProblem<StoreType, CmdType, GuardType> problem,
+			Example<StoreType, CmdType> example, PlanningReport.ExampleEntry entry) {
+		long start = System.nanoTime();
+		try {
 			if (example.inputOnly()) {
+				entry.source = PlanningReport.Source.TRACE;
 				if (problem.interpreter().isPresent()) {
 					var interpreter = problem.interpreter().get();
-					optPlan = interpreter.genTrace(example.step(0).getT1(), maxTraceLength);
+					return cachedTrace(example, "trace:" + maxTraceLength,
+							() -> interpreter.genTrace(example.step(0).getT1(), maxTraceLength), entry);
 				} else {
 					debugger.warning("No reference program to complete " + example.name + " (skipped)!");
-					optPlan = Optional.empty();
+					return Optional.empty();
 				}
 			} else {
-				optPlan = PlanningUtils.exampleToPlan(problem.semantics(), planner, example, debugger);
+				return cachedTrace(example, planContext(), () -> PlanningUtils
+						.exampleToPlan(problem.semantics(), planner, example, debugger, entry.steps), entry);
 			}
+		} finally {
+			entry.millis = (System.nanoTime() - start) / 1000000;
+		}
+	}
 
-			if (optPlan.isPresent()) {
-				if (optPlan.get().lastState() instanceof ErrorStore) {
-					var errorStore = (ErrorStore) optPlan.get().lastState();
-					debugger.warning(
-							"Example " + example.name + " yields an error store (skipped): " + errorStore.message());
-					continue;
-				} else {
-					var plan = optPlan.get();
-					exampleToPlan.put(example, plan);
-					debugger.printPlan(plan, example.id);
-					debugger.info("Found a plan for example " + example.name);
-				}
+	/**
+	 * Adds the plan of the given example, unless there is no plan or it yields an
+	 * error store.
+	 */
+	private void addPlan(Example<StoreType, CmdType> example, Optional<Trace<StoreType, CmdType>> optPlan,
+			Map<Example<StoreType, CmdType>, Trace<StoreType, CmdType>> exampleToPlan,
+			PlanningReport.ExampleEntry entry) {
+		if (optPlan.isPresent()) {
+			if (optPlan.get().lastState() instanceof ErrorStore) {
+				var errorStore = (ErrorStore) optPlan.get().lastState();
+				debugger.warning(
+						"Example " + example.name + " yields an error store (skipped): " + errorStore.message());
 			} else {
-				debugger.info("No plan for example " + example.name + " (plan exceeded maximal number of steps or infinite loop detected)!");
-				continue;
+				var plan = optPlan.get();
+				exampleToPlan.put(example, plan);
+				entry.planLength = plan.size() - 1;
+				debugger.printPlan(plan, example.id);
+				debugger.info("Found a plan for example " + example.name);
 			}
+		} else {
+			debugger.info("No plan for example " + example.name + " (plan exceeded maximal number of steps or infinite loop detected)!");
 		}
-		return exampleToPlan;
+	}
+
+	/**
+	 * Returns the trace of the given example from the cache, if it is there, and
+	 * otherwise computes it and adds it to the cache.
+	 */
+	private Optional<Trace<StoreType, CmdType>> cachedTrace(Example<StoreType, CmdType> example, String context,
+			Supplier<Optional<Trace<StoreType, CmdType>>> compute, PlanningReport.ExampleEntry entry) {
+		if (traceCache == null) {
+			return compute.get();
+		}
+		var cached = traceCache.get(example, context);
+		if (cached.isPresent()) {
+			entry.source = PlanningReport.Source.CACHE;
+			debugger.info("Using cached trace for example " + example.name);
+			return cached;
+		}
+		var result = compute.get();
+		if (result.isPresent() && !(result.get().lastState() instanceof ErrorStore)) {
+			traceCache.put(example, context, result.get());
+		}
+		return result;
 	}
 
 	/**
@@ -0,0 +1,232 @@
+package pexyn;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+
+import pexyn.planning.SearchStatistics;
+
+/**
+ * Collects the statistics of the searches performed for converting examples
+ * to plans, and renders them as a JSON document, for comparing planners and
+ * their settings across runs.
+ *
+ * @author romanm
+ */
+public class PlanningReport {
+	/**
+	 * The way the trace of an example was obtained.
+	 */
+	public static enum Source {
+		/**
+		 * Planned separately.
+		 */
+		PLAN,
+
+		/**
+		 * Planned together with other examples (see
+		 * {@link PETISynthesizer#setLockstepPlanner}).
+		 */
+		LOCKSTEP,
+
+		/**
+		 * Executed by a reference implementation.
+		 */
+		TRACE,
+
+		/**
+		 * Taken from the trace cache.
+		 */
+		CACHE
+	}
+
+	/**
+	 * The statistics of a single example.
+	 *
+	 * @author romanm
+	 */
+	public static class ExampleEntry {
+		public final String name;
+		public Source source = Source.PLAN;
+
+		/**
+		 * The number of actions in the plan of the example, or -1 if there is no
+		 * plan.
+		 */
+		public int planLength = -1;
+
+		/**
+		 * The wall-clock time spent on the example.
+		 */
+		public long millis = 0;
+
+		/**
+		 * The statistics of the searches for the consecutive steps of the example.
+		 */
+		public final List<SearchStatistics> steps = new ArrayList<>();
+
+		public ExampleEntry(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns the sums of the statistics of the steps, and the greatest open
+		 * list size.
+		 */
+		public SearchStatistics totals() {
+			var result = new SearchStatistics();
+			for (var step : steps) {
+				result.expandedNodes += step.expandedNodes;
+				result.reexpandedNodes += step.reexpandedNodes;
+				result.reusedExpansions += step.reusedExpansions;
+				result.duplicatePops += step.duplicatePops;
+				result.prunedActions += step.prunedActions;
+				result.generatedNodes += step.generatedNodes;
+				result.heuristicNanos += step.heuristicNanos;
+				result.successorNanos += step.successorNanos;
+				result.updateOpenSize(step.maxOpenSize);
+			}
+			return result;
+		}
+	}
+
+	public final String planner;
+	private final List<ExampleEntry> examples = new ArrayList<>();
+
+	/**
+	 * The statistics of the search for a plan shared by several examples, or
+	 * null.
+	 */
+	public SearchStatistics lockstep = null;
+
+	/**
+	 * The wall-clock time spent on converting all the examples to plans.
+	 */
+	public long planningMillis = 0;
+
+	public PlanningReport(String planner) {
+		this.planner = planner;
+	}
+
+	/**
+	 * Adds an entry for the example with the given name. Can be called
+	 * concurrently for different examples.
+	 */
+	public synchronized ExampleEntry add(String name) {
+		var result = new ExampleEntry(name);
+		examples.add(result);
+		return result;
+	}
+
+	/**
+	 * Returns a one-line summary of the planning time and of the number of
+	 * examples whose traces were obtained from each source, for the log.
+	 */
+	public synchronized String summary() {
+		var counts = new EnumMap<Source, Integer>(Source.class);
+		for (var example : examples) {
+			counts.merge(example.source, 1, Integer::sum);
+		}
+		var result = new StringBuilder();
+		result.append("Obtained traces of " + examples.size() + " examples in " + planningMillis + " ms");
+		String separator = ": ";
+		for (var count : counts.entrySet()) {
+			result.append(separator + count.getKey().name().toLowerCase() + "=" + count.getValue());
+			separator = ", ";
+		}
+		return result.toString();
+	}
+
+	public synchronized String toJson() {
+		var result = new StringBuilder();
+		result.append("{\n");
+		result.append("  \"planner\": " + quote(planner) + ",\n");
+		result.append("  \"planningMillis\": " + planningMillis + ",\n");
+		if (lockstep != null) {
+			result.append("  \"lockstep\": ");
+			appendStatistics(result, lockstep, true);
+			result.append(",\n");
+		}
+		result.append("  \"examples\": [");
+		for (int i = 0; i < examples.size(); ++i) {
+			var example = examples.get(i);
+			result.append(i > 0 ? ",\n" : "\n");
+			result.append("    {\"name\": " + quote(example.name));
+			result.append(", \"source\": " + quote(example.source.name().toLowerCase()));
+			result.append(", \"planLength\": " + example.planLength);
+			result.append(", \"millis\": " + example.millis);
+			if (!example.steps.isEmpty()) {
+				result.append(",\n      \"totals\": ");
+				appendStatistics(result, example.totals(), false);
+				result.append(",\n      \"steps\": [");
+				for (int j = 0; j < example.steps.size(); ++j) {
+					result.append(j > 0 ? ",\n        " : "\n        ");
+					appendStatistics(result, example.steps.get(j), true);
+				}
+				result.append("]");
+			}
+			result.append("}");
+		}
+		result.append("\n  ]\n}\n");
+		return result.toString();
+	}
+
+	/**
+	 * Appends the given statistics as a JSON object. The properties of a single
+	 * search are included only if 'search' is set.
+	 */
+	private static void appendStatistics(StringBuilder result, SearchStatistics stats, boolean search) {
+		result.append("{");
+		if (search) {
+			result.append("\"result\": " + (stats.result != null ? quote(stats.result.name()) : "null") + ", ");
+			result.append("\"planLength\": " + stats.planLength + ", ");
+			result.append(String.format(Locale.ROOT, "\"effectiveBranchingFactor\": %.3f, ",
+					stats.effectiveBranchingFactor()));
+			result.append("\"searchMillis\": " + stats.elapsedMillis() + ", ");
+		}
+		result.append("\"expanded\": " + stats.expandedNodes);
+		result.append(", \"reexpanded\": " + stats.reexpandedNodes);
+		result.append(", \"reused\": " + stats.reusedExpansions);
+		result.append(", \"generated\": " + stats.generatedNodes);
+		result.append(", \"duplicatePops\": " + stats.duplicatePops);
+		result.append(", \"prunedActions\": " + stats.prunedActions);
+		result.append(", \"maxOpen\": " + stats.maxOpenSize);
+		result.append(String.format(Locale.ROOT, ", \"heuristicMillis\": %.3f", stats.heuristicNanos / 1e6));
+		result.append(String.format(Locale.ROOT, ", \"successorMillis\": %.3f", stats.successorNanos / 1e6));
+		if (search && stats.exhaustedResource != null) {
+			result.append(", \"exhausted\": " + quote(stats.exhaustedResource));
+		}
+		result.append("}");
+	}
+
+	private static String quote(String text) {
+		var result = new StringBuilder("\"");
+		for (char c : text.toCharArray()) {
+			switch (c) {
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\\':
+				result.append("\\\\");
+				break;
+			case '\n':
+				result.append("\\n");
+				break;
+			case '\r':
+				result.append("\\r");
+				break;
+			case '\t':
+				result.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					result.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+				} else {
+					result.append(c);
+				}
+			}
+		}
+		return result.append('"').toString();
+	}
+}
\ No newline at end of file
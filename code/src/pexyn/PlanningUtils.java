@@ -1,5 +1,6 @@
 package pexyn;
 
+import java.util.List;
 import java.util.Optional;
 
 import bgu.cs.util.Union2;
@@ -9,6 +10,7 @@ import pexyn.Semantics.Guard;
 import pexyn.Semantics.Store;
 import pexyn.planning.Planner;
 import pexyn.planning.SearchResultType;
+import pexyn.planning.SearchStatistics;
 
 /**
  * Utilities related to planning and plans.
@@ -19,6 +21,21 @@ public class PlanningUtils {
 	public static <StoreType extends Store, CmdType extends Cmd, GuardType extends Guard> Optional<Trace<StoreType, CmdType>> exampleToPlan(
 			Semantics<StoreType, CmdType, GuardType> semantics, Planner<StoreType, CmdType> planner,
 			Example<StoreType, CmdType> example, GPDebugger<StoreType, CmdType, GuardType> debugger) {
+		return exampleToPlan(semantics, planner, example, debugger, null);
+	}
+
+	/**
+	 * Converts the given example to a plan, by planning for its consecutive
+	 * goals.
+	 *
+	 * @param stepStatistics
+	 *            If not null, the statistics of the search for each goal are
+	 *            added to this list, when the planner gathers any.
+	 */
+	public static <StoreType extends Store, CmdType extends Cmd, GuardType extends Guard> Optional<Trace<StoreType, CmdType>> exampleToPlan(
+			Semantics<StoreType, CmdType, GuardType> semantics, Planner<StoreType, CmdType> planner,
+			Example<StoreType, CmdType> example, GPDebugger<StoreType, CmdType, GuardType> debugger,
+			List<SearchStatistics> stepStatistics) {
 		assert example.size() > 0;
 		if (example.size() == 1 && example.step(0).isT1()) {
 			// An example for a possible input.
@@ -35,37 +52,55 @@ public class PlanningUtils {
 
 		debugger.info("Planning for example " + example.name + "...");
 		Trace<StoreType, CmdType> plan = new ArrayListTrace<>(current);
-		for (int i = 1; i < example.steps.size(); ++i) {
-			Union2<StoreType, CmdType> step = example.steps.get(i);
-			if (step.isT1()) {
-				var stateGoal = step.getT1();
-				SearchResultType planResult = planner.findPlan(current, state -> {
-					return semantics.match(state, stateGoal);
-				}, plan);
-				switch (planResult) {
-				case OK:
-					current = plan.lastState();
-					break;
-				case NO_SOLUTION_EXISTS:
-					debugger.info("No plan exists for example " + example.name + "! Skipping example.");
-					return Optional.empty();
-				case OUT_OF_RESOURCES:
-					debugger.info("Timed out on example " + example.name + "! Skipping example.");
-					return Optional.empty();
-				}
-			} else {
-				CmdType action = step.getT2();
-				Optional<StoreType> next = semantics.apply(action, current);
-				if (next.isPresent() && !(next.get() instanceof JmErrorStore)) {
-					current = next.get();
-					plan.append(action, current);
+		// The steps of an example are planned in a single session, which lets
+		// the planner reuse work across consecutive goals.
+		var session = planner.newSession();
+		try {
+			for (int i = 1; i < example.steps.size(); ++i) {
+				Union2<StoreType, CmdType> step = example.steps.get(i);
+				if (step.isT1()) {
+					var stateGoal = step.getT1();
+					SearchResultType planResult = session.findPlan(current, new MatchGoal<>(semantics, stateGoal),
+							plan);
+					var stepStats = session.lastStatistics();
+					if (stepStatistics != null && stepStats.isPresent()) {
+						stepStatistics.add(stepStats.get());
+					}
+					if (stepStats.isPresent() && stepStats.get().duplicateDetection != null) {
+						// The search may have missed states due to hash collisions.
+						debugger.info("Duplicate detection for example " + example.name + " at step " + i + ": "
+								+ stepStats.get().duplicateDetection + ", collision probability "
+								+ stepStats.get().collisionProbability);
+					}
+					switch (planResult) {
+					case OK:
+						current = plan.lastState();
+						break;
+					case NO_SOLUTION_EXISTS:
+						debugger.info("No plan exists for example " + example.name + "! Skipping example.");
+						return Optional.empty();
+					case OUT_OF_RESOURCES:
+						var stats = session.lastStatistics();
+						debugger.info("Timed out on example " + example.name
+								+ (stats.isPresent() ? " (" + stats.get() + ")" : "") + "! Skipping example.");
+						return Optional.empty();
+					}
 				} else {
-					debugger.info("Action " + action.toString() + " of example " + example.name + " at step " + i
-							+ " is not applicable for the respective state! Skipping example.");
-					return Optional.empty();
+					CmdType action = step.getT2();
+					Optional<StoreType> next = semantics.apply(action, current);
+					if (next.isPresent() && !(next.get() instanceof JmErrorStore)) {
+						current = next.get();
+						plan.append(action, current);
+					} else {
+						debugger.info("Action " + action.toString() + " of example " + example.name + " at step " + i
+								+ " is not applicable for the respective state! Skipping example.");
+						return Optional.empty();
+					}
 				}
 			}
+			return Optional.of(plan);
+		} finally {
+			session.endSession();
 		}
-		return Optional.of(plan);
 	}
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package pexyn;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 import pexyn.Semantics.Cmd;
 import pexyn.Semantics.Guard;
@@ -53,6 +54,25 @@ public interface Semantics<StoreType extends Store, CmdType extends Cmd, GuardTy
 	 */
 	public boolean match(StoreType first, StoreType second);
 
+	/**
+	 * Returns a test for the stores that match the given store, which is
+	 * equivalent to {@link #match} and may precompute whatever depends only on
+	 * the given store. Used for goal tests, which are applied to every state
+	 * visited by a search.
+	 */
+	public default Predicate<StoreType> compileMatch(StoreType second) {
+		return first -> match(first, second);
+	}
+
+	/**
+	 * Returns a store equal to the given store, which may be shared by all the
+	 * plans holding equal stores. The default implementation returns the given
+	 * store.
+	 */
+	public default StoreType intern(StoreType store) {
+		return store;
+	}
+
 	/**
 	 * Attempts to apply the given update to the given value.
 	 * 
@@ -1,5 +1,7 @@
 package pexyn;
 
+import java.util.function.UnaryOperator;
+
 /**
  * Defines a sequence of actions and intermediate states, starting from an input
  * state and leading to a goal state.
@@ -57,6 +59,12 @@ public interface Trace<StateType, ActionType> {
 
 	public void setFirst(StateType state);
 
+	/**
+	 * Replaces every state of this trace by the result of applying the given
+	 * operator to it.
+	 */
+	public void replaceStates(UnaryOperator<StateType> f);
+
 	/**
 	 * Precondition: <code>!isEmpty()</code>
 	 */
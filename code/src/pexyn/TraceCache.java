@@ -0,0 +1,163 @@
+package pexyn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+
+import pexyn.Semantics.Cmd;
+import pexyn.Semantics.Store;
+
+/**
+ * A persistent cache of the traces (plans or reference-program traces) of
+ * examples, kept as files in a directory.<br>
+ * Each trace is stored in a file named by a hash of the canonical description
+ * of the example, as given by a {@link TraceCodec}, and of a context string
+ * describing how the trace was obtained. When the total size of the files
+ * exceeds a bound, the least recently used files are deleted.
+ * 
+ * @author romanm
+ *
+ * @param <StoreType>
+ *            The type of stores.
+ * @param <CmdType>
+ *            The type of commands.
+ */
+public class TraceCache<StoreType extends Store, CmdType extends Cmd> {
+	private static final int MAGIC = 0x50585443;
+	private static final String SUFFIX = ".trace";
+
+	protected final TraceCodec<StoreType, CmdType> codec;
+	protected final File dir;
+	protected final long maxBytes;
+
+	/**
+	 * The number of successful lookups.
+	 */
+	public long hits = 0;
+
+	/**
+	 * The number of unsuccessful lookups.
+	 */
+	public long misses = 0;
+
+	/**
+	 * Constructs a cache in the given directory.
+	 * 
+	 * @param maxBytes
+	 *            A bound on the total size of the cache files.
+	 */
+	public TraceCache(TraceCodec<StoreType, CmdType> codec, File dir, long maxBytes) {
+		this.codec = codec;
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		dir.mkdirs();
+	}
+
+	/**
+	 * Returns the trace cached for the given example and context, if there is
+	 * one.
+	 */
+	public synchronized Optional<Trace<StoreType, CmdType>> get(Example<StoreType, CmdType> example,
+			String context) {
+		var file = fileFor(example, context);
+		if (!file.isFile()) {
+			++misses;
+			return Optional.empty();
+		}
+		Optional<Trace<StoreType, CmdType>> result;
+		try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			result = in.readInt() == MAGIC ? codec.decode(example, in) : Optional.empty();
+		} catch (IOException e) {
+			result = Optional.empty();
+		}
+		if (result.isPresent()) {
+			++hits;
+			file.setLastModified(System.currentTimeMillis());
+		} else {
+			++misses;
+		}
+		return result;
+	}
+
+	/**
+	 * Caches the given trace of the given example.
+	 * 
+	 * @return false if the trace could not be cached.
+	 */
+	public synchronized boolean put(Example<StoreType, CmdType> example, String context,
+			Trace<StoreType, CmdType> trace) {
+		var file = fileFor(example, context);
+		try {
+			var tmpFile = File.createTempFile("trace", ".tmp", dir);
+			try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeInt(MAGIC);
+				codec.encode(example, trace, out);
+			} catch (IOException e) {
+				tmpFile.delete();
+				throw e;
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			return false;
+		}
+		evict();
+		return true;
+	}
+
+	/**
+	 * Deletes the least recently used files until the cache fits in its bound.
+	 */
+	private void evict() {
+		var files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		if (files == null) {
+			return;
+		}
+		long total = 0;
+		for (var file : files) {
+			total += file.length();
+		}
+		if (total <= maxBytes) {
+			return;
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (var file : files) {
+			if (total <= maxBytes) {
+				break;
+			}
+			total -= file.length();
+			file.delete();
+		}
+	}
+
+	private File fileFor(Example<StoreType, CmdType> example, String context) {
+		var key = context + "\n" + codec.describe(example);
+		return new File(dir, sha256(key) + SUFFIX);
+	}
+
+	private static String sha256(String str) {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256").digest(str.getBytes(StandardCharsets.UTF_8));
+			var result = new StringBuilder();
+			for (byte b : digest) {
+				result.append(String.format("%02x", b));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new Error(e);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package pexyn;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Optional;
+
+import pexyn.Semantics.Cmd;
+import pexyn.Semantics.Store;
+
+/**
+ * Converts the traces of examples to and from a compact binary form, and
+ * describes examples canonically, for the purpose of caching traces.
+ * 
+ * @author romanm
+ *
+ * @param <StoreType>
+ *            The type of stores.
+ * @param <CmdType>
+ *            The type of commands.
+ */
+public interface TraceCodec<StoreType extends Store, CmdType extends Cmd> {
+	/**
+	 * Returns a description of the given example and everything else that
+	 * determines its trace (e.g., the available commands). Two examples with the
+	 * same description must have the same traces, even in different runs.
+	 */
+	public String describe(Example<StoreType, CmdType> example);
+
+	/**
+	 * Writes the given trace of the given example.
+	 */
+	public void encode(Example<StoreType, CmdType> example, Trace<StoreType, CmdType> trace, DataOutput out)
+			throws IOException;
+
+	/**
+	 * Reads a trace of the given example, written by
+	 * {@link #encode(Example, Trace, DataOutput)}, or returns an empty result if
+	 * the trace does not fit the example.
+	 */
+	public Optional<Trace<StoreType, CmdType>> decode(Example<StoreType, CmdType> example, DataInput in)
+			throws IOException;
+}
\ No newline at end of file
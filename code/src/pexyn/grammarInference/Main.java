@@ -19,7 +19,9 @@ import jminor.BoolExpr;
 import jminor.JmStore;
 import jminor.JminorDebugger;
 import jminor.JminorProblem;
+import jminor.JminorTraceCodec;
 import jminor.Stmt;
+import jminor.StubbornSetTR;
 import jminor.ast.ASTProblem;
 import jminor.ast.JminorParser;
 import jminor.ast.ProblemCompiler;
@@ -29,7 +31,9 @@ import pexyn.PETISynthesizer;
 import pexyn.Trace;
 import pexyn.guardInference.ConditionInferencer;
 import pexyn.guardInference.DTreeInferencer;
-import pexyn.planning.AStar;
+import pexyn.planning.LockstepPlanner;
+import pexyn.planning.PlannerFactory;
+import pexyn.planning.TR;
 
 
 /**
@@ -114,14 +118,34 @@ public class Main {
 			inferrenceTime.reset();
 			try {
 				JminorProblem problem = genProblem();
+				if (config.getBoolean("jminor.canonicalStores", false)) {
+					problem.useCanonicalStores();
+				}
 				setOutLogFile(problem.name);
 				logger.info("Synthesizer: started");
 				debugger.addLink(problem.name + "Events.txt", problem.name + " Events log");
 				debugger.addCodeFile(problem.name + "Problem.txt", problem.toString(), problem.name + " Specification");
 				debugger.printExamples(problem.examples);
-				var planner = new AStar<JmStore, Stmt>(new BasicJminorTR(problem.semantics));
+				var basicTR = new BasicJminorTR(problem.semantics, config);
+				TR<JmStore, Stmt> tr = basicTR;
+				if (config.getBoolean("jminor.partialOrderReduction", false)) {
+					tr = new StubbornSetTR(tr, problem.semantics);
+				}
+				var planner = PlannerFactory.create(tr, config);
 				var synthesizer = new PETISynthesizer<JmStore, Stmt, BoolExpr>(planner, config, debugger);
+				if (config.getBoolean("pexyn.cache", false)) {
+					synthesizer.setTraceCache(JminorTraceCodec.createCache(problem, config, outputDirPath));
+				}
+				if (config.getBoolean("pexyn.planning.lockstep", false)) {
+					synthesizer.setLockstepPlanner(
+							new LockstepPlanner<>(tr, productTR -> PlannerFactory.create(productTR, config)));
+				}
 				var plans = synthesizer.genPlans(problem);
+				basicTR.patternDatabaseStatus().ifPresent(status -> debugger.info("Shape pattern database " + status));
+				if (config.getBoolean("pexyn.planning.report", true)) {
+					debugger.addDataFile(problem.name + "Planning.json", synthesizer.planningReport().get().toJson(),
+							problem.name + " Planning statistics");
+				}
 				
 				var exampleToPlan = plans;
 				var trainingPlans = new ArrayList<Trace<JmStore, Stmt>>();
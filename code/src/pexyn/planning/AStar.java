@@ -4,9 +4,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Predicate;
 
-import bgu.cs.util.BucketHeap;
 import pexyn.ArrayListTrace;
 import pexyn.Trace;
 
@@ -26,11 +26,48 @@ public class AStar<StateType, ActionType> implements Planner<StateType, ActionTy
 	 */
 	protected TR<StateType, ActionType> tr;
 
+	/**
+	 * Bounds on the resources consumed by a single search.
+	 */
+	protected final SearchLimits limits;
+
+	/**
+	 * The statistics of the most recent search.
+	 */
+	protected SearchStatistics statistics = new SearchStatistics();
+
+	/**
+	 * The order in which open nodes are expanded.
+	 */
+	protected OpenList.Policy openListPolicy = OpenList.Policy.FH;
+
+	/**
+	 * The way expanded states are remembered. Unless it is
+	 * {@link VisitedSet.Mode#EXACT}, expanded states are kept only as hashes,
+	 * and full states are kept only for open nodes and their ancestors.
+	 */
+	protected VisitedSet.Mode duplicateDetection = VisitedSet.Mode.EXACT;
+
+	/**
+	 * The base-2 logarithm of the number of bits used by
+	 * {@link VisitedSet.Mode#BITSTATE}.
+	 */
+	protected int bitstateLog2Bits = 27;
+
 	/**
 	 * Constructs an instance of the algorithm for the given transition system.
 	 */
 	public AStar(TR<StateType, ActionType> tr) {
+		this(tr, SearchLimits.UNBOUNDED);
+	}
+
+	/**
+	 * Constructs an instance of the algorithm for the given transition system,
+	 * which gives up on searches that exceed the given limits.
+	 */
+	public AStar(TR<StateType, ActionType> tr, SearchLimits limits) {
 		this.tr = tr;
+		this.limits = limits;
 	}
 
 	@Override
@@ -38,23 +75,68 @@ public class AStar<StateType, ActionType> implements Planner<StateType, ActionTy
 			Trace<StateType, ActionType> addToPlan) {
 		Node<StateType, ActionType> resultNode = searchNode(input, goalTest);
 		if (resultNode != null) {
+			statistics.planLength = depth(resultNode);
 			createPath(resultNode, addToPlan);
 			return SearchResultType.OK;
 		} else {
-			return SearchResultType.NO_SOLUTION_EXISTS;
+			return statistics.result;
 		}
 	}
 
 	@Override
 	public SearchResult<StateType> findState(StateType initial, Predicate<StateType> goalTest) {
 		Node<StateType, ActionType> goalNode = searchNode(initial, goalTest);
-		if (goalNode == null) {
-			return SearchResult.noSolutionExists();
-		} else {
+		if (goalNode != null) {
+			statistics.planLength = depth(goalNode);
 			return SearchResult.of(goalNode.state);
+		} else if (statistics.result == SearchResultType.OUT_OF_RESOURCES) {
+			return SearchResult.outOfResources();
+		} else {
+			return SearchResult.noSolutionExists();
 		}
 	}
 
+	/**
+	 * Sets the order in which open nodes are expanded.
+	 */
+	public void setOpenListPolicy(OpenList.Policy openListPolicy) {
+		this.openListPolicy = openListPolicy;
+	}
+
+	/**
+	 * Sets the way expanded states are remembered.
+	 *
+	 * @param bitstateLog2Bits
+	 *            The base-2 logarithm of the number of bits used by
+	 *            {@link VisitedSet.Mode#BITSTATE}.
+	 */
+	public void setDuplicateDetection(VisitedSet.Mode duplicateDetection, int bitstateLog2Bits) {
+		this.duplicateDetection = duplicateDetection;
+		this.bitstateLog2Bits = bitstateLog2Bits;
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		var result = new AStar<>(tr, limits);
+		result.copySettings(this);
+		return result;
+	}
+
+	/**
+	 * Copies the settings of the given planner, which are not passed to the
+	 * constructors, to this planner.
+	 */
+	protected void copySettings(AStar<StateType, ActionType> other) {
+		this.openListPolicy = other.openListPolicy;
+		this.duplicateDetection = other.duplicateDetection;
+		this.bitstateLog2Bits = other.bitstateLog2Bits;
+	}
+
+	@Override
+	public Optional<SearchStatistics> lastStatistics() {
+		return Optional.of(statistics);
+	}
+
 	/**
 	 * A standard A*-based planning algorithm.
 	 * 
@@ -62,62 +144,120 @@ public class AStar<StateType, ActionType> implements Planner<StateType, ActionTy
 	 *            The initial state.
 	 * @param goalTest
 	 *            The predicate expressing the goal states.
-	 * @return The resulting search node or null if no plan exists.
+	 * @return The resulting search node or null if no plan exists or the search
+	 *         has exceeded its resource limits, as indicated by the result type
+	 *         of the search statistics.
 	 */
 	protected Node<StateType, ActionType> searchNode(StateType initial, Predicate<StateType> goalTest) {
+		statistics = new SearchStatistics();
+		statistics.start();
+		TR<StateType, ActionType> goalTR = statistics.forGoal(tr, goalTest);
 		Map<StateType, Node<StateType, ActionType>> stateToNode = new HashMap<>();
-		BucketHeap<Float, Node<StateType, ActionType>> open = new BucketHeap<>();
+		OpenList<StateType, ActionType> open = openListPolicy.create();
+		// Holds the expanded states, unless they are kept in stateToNode.
+		VisitedSet<StateType> visited = duplicateDetection.create(goalTR, bitstateLog2Bits);
 
 		Node<StateType, ActionType> startstate = new Node<>(initial, null);
 		stateToNode.put(initial, startstate);
 		startstate.gscore = 0;
-		startstate.fscore = tr.estimateDistToGoal(initial);
-		open.put(startstate.fscore, startstate);
+		startstate.fscore = statistics.timedEstimate(goalTR, initial);
+		open.add(startstate);
 
-		while (!open.isEmpty()) {
-			Node<StateType, ActionType> current = open.pop();
+		Node<StateType, ActionType> current;
+		while ((current = open.poll()) != null) {
+			statistics.liveNodes = stateToNode.size();
+			statistics.updateOpenSize(open.size());
+			statistics.duplicatePops = open.duplicatePops();
+			String exhaustedResource = limits.exhausted(statistics);
+			if (exhaustedResource != null) {
+				statistics.exhaustedResource = exhaustedResource;
+				recordVisited(visited);
+				statistics.stop(SearchResultType.OUT_OF_RESOURCES);
+				return null;
+			}
 
 			StateType currentState = current.state;
 			if (goalTest.test(currentState)) {
 				// Found a solution.
+				recordVisited(visited);
+				statistics.stop(SearchResultType.OK);
 				return current;
 			}
 
 			current.closed = true;
+			++statistics.expandedNodes;
+			if (visited != null) {
+				stateToNode.remove(currentState);
+				visited.add(currentState);
+			}
 
-			for (ActionType action : tr.enabledActions(currentState)) {
-				for (StateType nextState : tr.apply(currentState, action)) {
-					Node<StateType, ActionType> neighborNode = stateToNode.get(nextState);
-					if (neighborNode == null) {
-						// This is a never before seen state.
-						neighborNode = new Node<>(nextState, current);
-						float tentativeGScore = current.gscore + tr.transitionCost(currentState, action, nextState);
-						neighborNode.parent = current;
-						neighborNode.computedFrom = action;
-						neighborNode.gscore = tentativeGScore;
-						neighborNode.fscore = tentativeGScore + tr.estimateDistToGoal(nextState);
-						open.put(neighborNode.gscore, neighborNode);
-						stateToNode.put(nextState, neighborNode);
-					} else {
-						if (neighborNode.closed)
-							continue;
-						float tentativeGScore = current.gscore + tr.transitionCost(currentState, action, nextState);
-						if (tentativeGScore >= neighborNode.gscore)
-							continue;
-						neighborNode.parent = current;
-						neighborNode.computedFrom = action;
-						neighborNode.gscore = tentativeGScore;
-						neighborNode.fscore = tentativeGScore + tr.estimateDistToGoal(nextState);
-						open.put(neighborNode.gscore, neighborNode);
+			for (var transition : statistics.timedSuccessors(goalTR, currentState)) {
+				ActionType action = transition.action;
+				StateType nextState = transition.state;
+				++statistics.generatedNodes;
+				Node<StateType, ActionType> neighborNode = stateToNode.get(nextState);
+				if (neighborNode == null) {
+					if (visited != null && visited.contains(nextState)) {
+						// An expanded state (or a state mistaken for one).
+						continue;
 					}
+					// This is a never before seen state.
+					neighborNode = new Node<>(nextState, current);
+					float tentativeGScore = current.gscore + transition.cost;
+					neighborNode.parent = current;
+					neighborNode.computedFrom = action;
+					neighborNode.gscore = tentativeGScore;
+					neighborNode.fscore = tentativeGScore + statistics.timedEstimate(goalTR, nextState);
+					open.add(neighborNode);
+					stateToNode.put(nextState, neighborNode);
+				} else {
+					if (neighborNode.closed)
+						continue;
+					float tentativeGScore = current.gscore + transition.cost;
+					if (tentativeGScore >= neighborNode.gscore)
+						continue;
+					// The state may differ from the one of the node if states
+					// are compared up to some equivalence.
+					neighborNode.state = nextState;
+					neighborNode.parent = current;
+					neighborNode.computedFrom = action;
+					neighborNode.gscore = tentativeGScore;
+					neighborNode.fscore = tentativeGScore + statistics.timedEstimate(goalTR, nextState);
+					open.add(neighborNode);
 				}
 			}
 		}
 
 		// The search has failed. No solution exists.
+		statistics.duplicatePops = open.duplicatePops();
+		recordVisited(visited);
+		statistics.stop(SearchResultType.NO_SOLUTION_EXISTS);
 		return null;
 	}
 
+	/**
+	 * Records the duplicate detection mode in the statistics, unless it is
+	 * exact.
+	 */
+	private void recordVisited(VisitedSet<StateType> visited) {
+		if (visited != null) {
+			statistics.duplicateDetection = visited.describe();
+			statistics.collisionProbability = visited.collisionProbability();
+		}
+	}
+
+	/**
+	 * Returns the number of actions on the path from the initial node to the
+	 * given node.
+	 */
+	protected static int depth(Node<?, ?> node) {
+		int result = 0;
+		for (var pathNode = node; pathNode.parent != null; pathNode = pathNode.parent) {
+			++result;
+		}
+		return result;
+	}
+
 	/**
 	 * Uses the 'computedFrom' back links to construct the path from the initial
 	 * node to the given node.
@@ -187,6 +327,11 @@ public class AStar<StateType, ActionType> implements Planner<StateType, ActionTy
 		 */
 		public float fscore = MAX_SCORE;
 
+		/**
+		 * The position of this node in an {@link IndexedOpenList}, or -1.
+		 */
+		public int heapIndex = -1;
+
 		public Node(StateType s, Node<StateType, ActionType> p) {
 			this.state = s;
 			this.parent = p;
@@ -0,0 +1,238 @@
+package pexyn.planning;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import bgu.cs.util.BucketHeap;
+import pexyn.ArrayListTrace;
+import pexyn.Trace;
+
+/**
+ * An implementation of Anytime Repairing A* (ARA*).<br>
+ * The algorithm first runs a weighted A* search, ordering nodes by
+ * g+weight*h, which quickly finds a plan whose cost is at most 'weight' times
+ * the optimal cost. It then repeatedly lowers the weight and repairs the
+ * search, reusing the nodes generated so far, until the weight reaches 1 (and
+ * the plan is optimal) or the resource limits are exhausted. Each improved
+ * plan is published to an optional listener. When a limit is exhausted after a
+ * plan has been found, the best plan found so far is returned.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class AnytimeAStar<StateType, ActionType> extends AStar<StateType, ActionType> {
+	/**
+	 * The weight of the heuristic in the first search.
+	 */
+	protected final float initialWeight;
+
+	/**
+	 * The amount by which the weight is lowered after each improvement.
+	 */
+	protected final float weightDecrement;
+
+	/**
+	 * Indicates whether to return the first plan found rather than improving it.
+	 */
+	protected final boolean firstPlanOnly;
+
+	/**
+	 * Receives each improved plan, or null.
+	 */
+	protected Consumer<Trace<StateType, ActionType>> improvementListener = null;
+
+	public AnytimeAStar(TR<StateType, ActionType> tr, SearchLimits limits, float initialWeight,
+			float weightDecrement, boolean firstPlanOnly) {
+		super(tr, limits);
+		assert initialWeight >= 1 && weightDecrement > 0;
+		this.initialWeight = initialWeight;
+		this.weightDecrement = weightDecrement;
+		this.firstPlanOnly = firstPlanOnly;
+	}
+
+	/**
+	 * Sets the listener that receives each improved plan.
+	 */
+	public void setImprovementListener(Consumer<Trace<StateType, ActionType>> improvementListener) {
+		this.improvementListener = improvementListener;
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		var result = new AnytimeAStar<>(tr, limits, initialWeight, weightDecrement, firstPlanOnly);
+		result.setImprovementListener(improvementListener);
+		return result;
+	}
+
+	@Override
+	protected Node<StateType, ActionType> searchNode(StateType initial, Predicate<StateType> goalTest) {
+		statistics = new SearchStatistics();
+		statistics.start();
+		var search = new Search(statistics.forGoal(tr, goalTest), goalTest);
+		return search.run(initial);
+	}
+
+	/**
+	 * The state of a single search. Node f-scores hold the unweighted estimate
+	 * g+h, and open-list keys are computed from them according to the current
+	 * weight.
+	 */
+	private class Search {
+		private final TR<StateType, ActionType> goalTR;
+		private final Predicate<StateType> goalTest;
+		private final Map<StateType, Node<StateType, ActionType>> stateToNode = new HashMap<>();
+		private BucketHeap<Float, Node<StateType, ActionType>> open = new BucketHeap<>();
+		private final Set<Node<StateType, ActionType>> openNodes = new LinkedHashSet<>();
+
+		/**
+		 * Closed nodes whose g-score has improved during the current iteration.
+		 */
+		private final Set<Node<StateType, ActionType>> inconsistent = new LinkedHashSet<>();
+
+		private float weight = initialWeight;
+		private Node<StateType, ActionType> best = null;
+
+		public Search(TR<StateType, ActionType> goalTR, Predicate<StateType> goalTest) {
+			this.goalTR = goalTR;
+			this.goalTest = goalTest;
+		}
+
+		public Node<StateType, ActionType> run(StateType initial) {
+			Node<StateType, ActionType> start = new Node<>(initial, null);
+			start.gscore = 0;
+			start.fscore = statistics.timedEstimate(goalTR, initial);
+			stateToNode.put(initial, start);
+			insert(start);
+
+			while (true) {
+				Node<StateType, ActionType> previousBest = best;
+				boolean completed = improvePath();
+				if (best != previousBest && improvementListener != null) {
+					var plan = new ArrayListTrace<StateType, ActionType>(initial);
+					createPath(best, plan);
+					improvementListener.accept(plan);
+				}
+				if (!completed) {
+					if (best != null) {
+						// Out of resources, but we have a plan.
+						statistics.stop(SearchResultType.OK);
+						return best;
+					}
+					statistics.stop(SearchResultType.OUT_OF_RESOURCES);
+					return null;
+				}
+				if (best == null) {
+					statistics.stop(SearchResultType.NO_SOLUTION_EXISTS);
+					return null;
+				}
+				if (firstPlanOnly || weight <= 1) {
+					statistics.stop(SearchResultType.OK);
+					return best;
+				}
+				weight = Math.max(1, weight - weightDecrement);
+				reorderOpen();
+			}
+		}
+
+		/**
+		 * Runs weighted A* until no open node can lead to a plan cheaper than the
+		 * best one, with respect to the current weight.
+		 *
+		 * @return false if the search has exhausted its resources.
+		 */
+		private boolean improvePath() {
+			while (!open.isEmpty()) {
+				statistics.liveNodes = stateToNode.size();
+				statistics.updateOpenSize(openNodes.size());
+				String exhaustedResource = limits.exhausted(statistics);
+				if (exhaustedResource != null) {
+					statistics.exhaustedResource = exhaustedResource;
+					return false;
+				}
+
+				Node<StateType, ActionType> current = open.pop();
+				if (!openNodes.remove(current)) {
+					// A stale entry of a node that was already expanded.
+					++statistics.duplicatePops;
+					continue;
+				}
+				if (best != null && key(current) >= best.gscore) {
+					// Put it back for the next iteration.
+					insert(current);
+					return true;
+				}
+				StateType currentState = current.state;
+				if (goalTest.test(currentState)) {
+					if (best == null || current.gscore < best.gscore) {
+						best = current;
+					}
+					current.closed = true;
+					continue;
+				}
+
+				current.closed = true;
+				++statistics.expandedNodes;
+				for (var transition : statistics.timedSuccessors(goalTR, currentState)) {
+					ActionType action = transition.action;
+					StateType nextState = transition.state;
+					++statistics.generatedNodes;
+					float gscore = current.gscore + transition.cost;
+					Node<StateType, ActionType> neighborNode = stateToNode.get(nextState);
+					float h;
+					if (neighborNode == null) {
+						neighborNode = new Node<>(nextState, current);
+						h = statistics.timedEstimate(goalTR, nextState);
+						stateToNode.put(nextState, neighborNode);
+					} else if (gscore < neighborNode.gscore) {
+						h = neighborNode.fscore - neighborNode.gscore;
+					} else {
+						continue;
+					}
+					neighborNode.parent = current;
+					neighborNode.computedFrom = action;
+					neighborNode.gscore = gscore;
+					neighborNode.fscore = gscore + h;
+					if (neighborNode.closed) {
+						inconsistent.add(neighborNode);
+					} else {
+						insert(neighborNode);
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Moves the inconsistent nodes to the open list, orders the open list
+		 * according to the current weight, and reopens all closed nodes.
+		 */
+		private void reorderOpen() {
+			openNodes.addAll(inconsistent);
+			inconsistent.clear();
+			open = new BucketHeap<>();
+			for (var node : openNodes) {
+				open.put(key(node), node);
+			}
+			for (var node : stateToNode.values()) {
+				node.closed = false;
+			}
+		}
+
+		private void insert(Node<StateType, ActionType> node) {
+			openNodes.add(node);
+			open.put(key(node), node);
+		}
+
+		private float key(Node<StateType, ActionType> node) {
+			return node.gscore + weight * (node.fscore - node.gscore);
+		}
+	}
+}
\ No newline at end of file
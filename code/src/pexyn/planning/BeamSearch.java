@@ -0,0 +1,134 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An implementation of beam search, which explores the state space layer by
+ * layer and keeps only the 'width' nodes of each layer with the least f-scores
+ * for expanding the next layer.<br>
+ * The search expands a number of nodes linear in the width and the length of
+ * the plan, and detects goal states as soon as they are generated, so plans are
+ * not necessarily optimal. It keeps every generated state, so that no state
+ * is added to a layer twice and a search that runs out of nodes without
+ * pruning proves that there is no plan. Its memory is therefore linear in the
+ * number of generated states, which is at most the width times the branching
+ * factor times the length of the plan. Since no state is queued twice, the
+ * successors discarded as already generated are counted as duplicate pops.
+ * Since pruned nodes may be the only way to a goal, a
+ * search that runs out of nodes after pruning some falls back to {@link AStar},
+ * with the same settings and limits.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class BeamSearch<StateType, ActionType> extends AStar<StateType, ActionType> {
+	/**
+	 * The maximal number of nodes in a layer.
+	 */
+	protected final int width;
+
+	private static final Comparator<Node<?, ?>> BY_SCORES = (first, second) -> {
+		int result = Float.compare(first.fscore, second.fscore);
+		return result != 0 ? result : Float.compare(first.fscore - first.gscore, second.fscore - second.gscore);
+	};
+
+	public BeamSearch(TR<StateType, ActionType> tr, SearchLimits limits, int width) {
+		super(tr, limits);
+		assert width > 0;
+		this.width = width;
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		var result = new BeamSearch<>(tr, limits, width);
+		result.copySettings(this);
+		return result;
+	}
+
+	@Override
+	protected Node<StateType, ActionType> searchNode(StateType initial, Predicate<StateType> goalTest) {
+		statistics = new SearchStatistics();
+		statistics.start();
+		TR<StateType, ActionType> goalTR = statistics.forGoal(tr, goalTest);
+		Set<StateType> generated = new HashSet<>();
+		boolean pruned = false;
+
+		Node<StateType, ActionType> start = new Node<>(initial, null);
+		start.gscore = 0;
+		start.fscore = statistics.timedEstimate(goalTR, initial);
+		generated.add(initial);
+		if (goalTest.test(initial)) {
+			statistics.stop(SearchResultType.OK);
+			return start;
+		}
+
+		List<Node<StateType, ActionType>> layer = new ArrayList<>();
+		layer.add(start);
+		while (!layer.isEmpty()) {
+			var nextLayer = new ArrayList<Node<StateType, ActionType>>();
+			for (var current : layer) {
+				statistics.liveNodes = generated.size();
+				String exhaustedResource = limits.exhausted(statistics);
+				if (exhaustedResource != null) {
+					statistics.exhaustedResource = exhaustedResource;
+					statistics.stop(SearchResultType.OUT_OF_RESOURCES);
+					return null;
+				}
+
+				++statistics.expandedNodes;
+				// The successors are computed as they are iterated, so those following
+				// a goal state are never computed.
+				var successors = statistics.timedSuccessorsIterator(goalTR, current.state);
+				while (successors.hasNext()) {
+					var transition = successors.next();
+					StateType nextState = transition.state;
+					++statistics.generatedNodes;
+					if (!generated.add(nextState)) {
+						++statistics.duplicatePops;
+						continue;
+					}
+					float estimate = statistics.timedEstimate(goalTR, nextState);
+					if (estimate >= TR.MAX_COST) {
+						// The goal is unreachable from this state.
+						continue;
+					}
+					Node<StateType, ActionType> next = new Node<>(nextState, current);
+					next.computedFrom = transition.action;
+					next.gscore = current.gscore + transition.cost;
+					next.fscore = next.gscore + estimate;
+					if (goalTest.test(nextState)) {
+						statistics.stop(SearchResultType.OK);
+						return next;
+					}
+					nextLayer.add(next);
+				}
+			}
+			statistics.updateOpenSize(nextLayer.size());
+			if (nextLayer.size() > width) {
+				nextLayer.sort(BY_SCORES);
+				nextLayer.subList(width, nextLayer.size()).clear();
+				pruned = true;
+			}
+			layer = nextLayer;
+		}
+
+		if (!pruned) {
+			// The search was exhaustive.
+			statistics.stop(SearchResultType.NO_SOLUTION_EXISTS);
+			return null;
+		}
+		var beamStatistics = statistics;
+		var result = super.searchNode(initial, goalTest);
+		statistics.addEarlier(beamStatistics);
+		return result;
+	}
+}
\ No newline at end of file
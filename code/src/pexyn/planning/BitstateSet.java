@@ -0,0 +1,90 @@
+package pexyn.planning;
+
+/**
+ * A set of visited states that sets a few bits per state in a bit array of a
+ * fixed size (a Bloom filter), as in the bitstate hashing of SPIN. Uses a
+ * fixed amount of memory regardless of the number of states, at the cost of
+ * mistaking new states for visited ones as the array fills up.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ */
+public class BitstateSet<StateType> extends VisitedSet<StateType> {
+	private static final long SEED = 0x5851f42d4c957f2dL;
+
+	/**
+	 * The number of bits set per state.
+	 */
+	public static final int NUM_HASHES = 3;
+
+	private final long[] bits;
+	private final int log2Bits;
+	private final long mask;
+	private long setBits = 0;
+	private long size = 0;
+
+	/**
+	 * Constructs a set over an array of 2^log2Bits bits.
+	 */
+	public BitstateSet(TR<StateType, ?> tr, int log2Bits) {
+		super(tr);
+		assert log2Bits >= 6 && log2Bits <= 36;
+		this.bits = new long[1 << (log2Bits - 6)];
+		this.log2Bits = log2Bits;
+		this.mask = (1L << log2Bits) - 1;
+	}
+
+	@Override
+	public void add(StateType state) {
+		long hash1 = tr.fingerprint(state, SEED);
+		long hash2 = mix(hash1) | 1;
+		boolean added = false;
+		for (int i = 0; i < NUM_HASHES; ++i) {
+			long bit = (hash1 + i * hash2) & mask;
+			int word = (int) (bit >>> 6);
+			long bitMask = 1L << bit;
+			if ((bits[word] & bitMask) == 0) {
+				bits[word] |= bitMask;
+				++setBits;
+				added = true;
+			}
+		}
+		if (added) {
+			++size;
+		}
+	}
+
+	@Override
+	public boolean contains(StateType state) {
+		long hash1 = tr.fingerprint(state, SEED);
+		long hash2 = mix(hash1) | 1;
+		for (int i = 0; i < NUM_HASHES; ++i) {
+			long bit = (hash1 + i * hash2) & mask;
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Returns the probability that a new state is mistaken for a visited one,
+	 * given the current fill ratio of the bit array.
+	 */
+	@Override
+	public double collisionProbability() {
+		return Math.pow((double) setBits / (mask + 1), NUM_HASHES);
+	}
+
+	@Override
+	public String describe() {
+		return "bitstate hashing of " + size + " states into 2^" + log2Bits + " bits";
+	}
+}
\ No newline at end of file
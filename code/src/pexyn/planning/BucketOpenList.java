@@ -0,0 +1,68 @@
+package pexyn.planning;
+
+import bgu.cs.util.BucketHeap;
+import pexyn.planning.AStar.Node;
+
+/**
+ * An open list that keeps nodes in buckets of equal f-scores, and prefers the
+ * most recently added node among nodes with equal f-scores.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class BucketOpenList<StateType, ActionType> implements OpenList<StateType, ActionType> {
+	private final BucketHeap<Float, Entry<StateType, ActionType>> heap = new BucketHeap<>();
+	private long duplicatePops = 0;
+
+	@Override
+	public void add(Node<StateType, ActionType> node) {
+		heap.put(node.fscore, new Entry<>(node));
+	}
+
+	@Override
+	public Node<StateType, ActionType> poll() {
+		while (!heap.isEmpty()) {
+			var entry = heap.pop();
+			if (entry.isCurrent()) {
+				return entry.node;
+			}
+			++duplicatePops;
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return heap.size();
+	}
+
+	@Override
+	public long duplicatePops() {
+		return duplicatePops;
+	}
+
+	/**
+	 * A node along with the f-score it had when it was added.
+	 */
+	static class Entry<StateType, ActionType> {
+		public final Node<StateType, ActionType> node;
+		public final float fscore;
+
+		public Entry(Node<StateType, ActionType> node) {
+			this.node = node;
+			this.fscore = node.fscore;
+		}
+
+		/**
+		 * Checks whether the node is still open and has not been added again with
+		 * a different score.
+		 */
+		public boolean isCurrent() {
+			return !node.closed && node.fscore == fscore;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,319 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A transition relation that keeps the explored part of another transition
+ * relation, i.e., the transitions of each state by each action it was asked
+ * about, so that later searches over the same states do not recompute them.<br>
+ * Goal-specialized relations obtained by {@link #forGoal(Predicate)} share the
+ * explored graph, while taking their heuristic and their candidate and
+ * relevant actions from the goal-specialized underlying relation. A state is
+ * therefore expanded only by the candidate actions of the goals it was
+ * searched for, and the transitions of an action are computed once for all
+ * goals.<br>
+ * The explored graph is discarded when it reaches a given number of stored
+ * transitions. While recording is off, transitions are computed by the
+ * underlying relation and not stored, which avoids the cost of the graph in
+ * searches that do not benefit from it.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class CachingTR<StateType, ActionType> implements TR<StateType, ActionType> {
+	protected final TR<StateType, ActionType> tr;
+
+	/**
+	 * The number of stored transitions at which the explored graph is
+	 * discarded.
+	 */
+	protected final int maxTransitions;
+
+	/**
+	 * The explored part of the transition relation.
+	 */
+	private final Map<StateType, Expansion<StateType, ActionType>> graph = new HashMap<>();
+
+	/**
+	 * The number of requests for transitions answered from the explored graph.
+	 */
+	private long hits = 0;
+
+	/**
+	 * The number of transitions in the explored graph.
+	 */
+	private int numTransitions = 0;
+
+	/**
+	 * Indicates whether computed transitions are added to the explored graph.
+	 */
+	private boolean recording = true;
+
+	public CachingTR(TR<StateType, ActionType> tr, int maxTransitions) {
+		assert maxTransitions > 0;
+		this.tr = tr;
+		this.maxTransitions = maxTransitions;
+	}
+
+	/**
+	 * Sets whether computed transitions are added to the explored graph.
+	 * Transitions that are already in the graph are used either way.
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+
+	/**
+	 * Returns the number of states in the explored graph.
+	 */
+	public int size() {
+		return graph.size();
+	}
+
+	/**
+	 * Returns the number of transitions in the explored graph.
+	 */
+	public int numTransitions() {
+		return numTransitions;
+	}
+
+	/**
+	 * Discards the explored graph.
+	 */
+	public void clear() {
+		graph.clear();
+		numTransitions = 0;
+	}
+
+	/**
+	 * Returns the number of requests for transitions answered from the explored
+	 * graph.
+	 */
+	public long hits() {
+		return hits;
+	}
+
+	@Override
+	public Collection<ActionType> enabledActions(StateType state) {
+		return Transition.actions(successors(state));
+	}
+
+	@Override
+	public Collection<ActionType> candidateActions(StateType state) {
+		if (!recording && !graph.containsKey(state)) {
+			return tr.candidateActions(state);
+		}
+		var expansion = expansion(state);
+		if (expansion.candidates == null) {
+			expansion.candidates = tr.candidateActions(state);
+		}
+		return expansion.candidates;
+	}
+
+	@Override
+	public float transitionCost(StateType src, ActionType action, StateType dst) {
+		return tr.transitionCost(src, action, dst);
+	}
+
+	@Override
+	public Collection<Transition<StateType, ActionType>> successors(StateType state) {
+		var transitions = transitions(state, candidateActions(state));
+		return Transition.restrict(transitions, tr.relevantActions(state, Transition.actions(transitions)));
+	}
+
+	/**
+	 * Returns the transitions of the given actions from the explored graph,
+	 * computing only the transitions of the actions that were not applied to
+	 * the given state before.
+	 */
+	@Override
+	public Collection<Transition<StateType, ActionType>> transitions(StateType state,
+			Collection<ActionType> actions) {
+		var expansion = graph.get(state);
+		if (expansion == null) {
+			if (!recording) {
+				return tr.transitions(state, actions);
+			}
+			expansion = expansion(state);
+		}
+		List<ActionType> missing = null;
+		for (ActionType action : actions) {
+			if (!expansion.transitions.containsKey(action)) {
+				if (missing == null) {
+					missing = new ArrayList<>();
+				}
+				missing.add(action);
+			}
+		}
+		if (missing == null) {
+			++hits;
+		} else if (!recording) {
+			return tr.transitions(state, actions);
+		} else {
+			var computed = tr.transitions(state, missing);
+			if (numTransitions + computed.size() > maxTransitions) {
+				// Start a new graph with all the transitions of this state.
+				var candidates = expansion.candidates;
+				clear();
+				expansion = expansion(state);
+				expansion.candidates = candidates;
+				if (missing.size() < actions.size()) {
+					missing = new ArrayList<>(actions);
+					computed = tr.transitions(state, missing);
+				}
+			}
+			// Disabled actions keep an empty list of transitions.
+			for (ActionType action : missing) {
+				expansion.transitions.put(action, List.of());
+			}
+			numTransitions += computed.size();
+			for (var transition : computed) {
+				var actionTransitions = expansion.transitions.get(transition.action);
+				if (actionTransitions.isEmpty()) {
+					actionTransitions = new ArrayList<>(1);
+					expansion.transitions.put(transition.action, actionTransitions);
+				}
+				actionTransitions.add(transition);
+			}
+		}
+		var result = new ArrayList<Transition<StateType, ActionType>>(actions.size());
+		for (ActionType action : actions) {
+			result.addAll(expansion.transitions.get(action));
+		}
+		return result;
+	}
+
+	@Override
+	public Collection<StateType> apply(StateType state, ActionType action) {
+		var expansion = graph.get(state);
+		var actionTransitions = expansion != null ? expansion.transitions.get(action) : null;
+		if (actionTransitions == null || actionTransitions.isEmpty()) {
+			return tr.apply(state, action);
+		}
+		var result = new ArrayList<StateType>(actionTransitions.size());
+		for (var transition : actionTransitions) {
+			result.add(transition.state);
+		}
+		return result;
+	}
+
+	@Override
+	public Collection<ActionType> relevantActions(StateType state, Collection<ActionType> enabled) {
+		return tr.relevantActions(state, enabled);
+	}
+
+	@Override
+	public float estimateDistToGoal(StateType state) {
+		return tr.estimateDistToGoal(state);
+	}
+
+	@Override
+	public long fingerprint(StateType state, long seed) {
+		return tr.fingerprint(state, seed);
+	}
+
+	@Override
+	public int prunedActions() {
+		return tr.prunedActions();
+	}
+
+	@Override
+	public TR<StateType, ActionType> forGoal(Predicate<StateType> goalTest) {
+		var goalTR = tr.forGoal(goalTest);
+		if (goalTR == tr) {
+			return this;
+		}
+		return new TR<StateType, ActionType>() {
+			@Override
+			public Collection<ActionType> enabledActions(StateType state) {
+				return Transition.actions(successors(state));
+			}
+
+			@Override
+			public Collection<ActionType> candidateActions(StateType state) {
+				return goalTR.candidateActions(state);
+			}
+
+			@Override
+			public Collection<ActionType> relevantActions(StateType state, Collection<ActionType> enabled) {
+				return goalTR.relevantActions(state, enabled);
+			}
+
+			@Override
+			public Collection<Transition<StateType, ActionType>> transitions(StateType state,
+					Collection<ActionType> actions) {
+				return CachingTR.this.transitions(state, actions);
+			}
+
+			@Override
+			public Collection<Transition<StateType, ActionType>> successors(StateType state) {
+				var transitions = CachingTR.this.transitions(state, goalTR.candidateActions(state));
+				return Transition.restrict(transitions, goalTR.relevantActions(state, Transition.actions(transitions)));
+			}
+
+			@Override
+			public float transitionCost(StateType src, ActionType action, StateType dst) {
+				return CachingTR.this.transitionCost(src, action, dst);
+			}
+
+			@Override
+			public Collection<StateType> apply(StateType state, ActionType action) {
+				return CachingTR.this.apply(state, action);
+			}
+
+			@Override
+			public float estimateDistToGoal(StateType state) {
+				return goalTR.estimateDistToGoal(state);
+			}
+
+			@Override
+			public long fingerprint(StateType state, long seed) {
+				return goalTR.fingerprint(state, seed);
+			}
+
+			@Override
+			public int prunedActions() {
+				return goalTR.prunedActions();
+			}
+		};
+	}
+
+	/**
+	 * Returns the expansion of the given state, adding an empty one to the
+	 * explored graph if there is none.
+	 */
+	private Expansion<StateType, ActionType> expansion(StateType state) {
+		var result = graph.get(state);
+		if (result == null) {
+			result = new Expansion<>();
+			graph.put(state, result);
+		}
+		return result;
+	}
+
+	/**
+	 * The transitions of a state computed so far.
+	 */
+	private static class Expansion<StateType, ActionType> {
+		/**
+		 * The transitions by each action applied to the state, which are empty for
+		 * disabled actions.
+		 */
+		public final Map<ActionType, List<Transition<StateType, ActionType>>> transitions = new HashMap<>();
+
+		/**
+		 * The candidate actions of the state in the underlying relation, or null
+		 * if they were not requested.
+		 */
+		public Collection<ActionType> candidates = null;
+	}
+}
@@ -0,0 +1,110 @@
+package pexyn.planning;
+
+/**
+ * A set of visited states that keeps a 64-bit or 128-bit fingerprint per
+ * state, in an open-addressing hash table.<br>
+ * By the birthday bound, the probability that two of n distinct states share
+ * a b-bit fingerprint is at most n(n-1)/2^(b+1).
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ */
+public class FingerprintSet<StateType> extends VisitedSet<StateType> {
+	private static final long SEED1 = 0x2545f4914f6cdd1dL;
+	private static final long SEED2 = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Indicates whether fingerprints have 128 bits, rather than 64.
+	 */
+	protected final boolean wide;
+
+	// The empty slot has zero in both tables, so fingerprints are never zero.
+	private long[] table1 = new long[1024];
+	private long[] table2;
+	private long size = 0;
+
+	public FingerprintSet(TR<StateType, ?> tr, boolean wide) {
+		super(tr);
+		this.wide = wide;
+		this.table2 = wide ? new long[table1.length] : null;
+	}
+
+	@Override
+	public void add(StateType state) {
+		long fp1 = fingerprint1(state);
+		long fp2 = wide ? tr.fingerprint(state, SEED2) : 0;
+		if (insert(fp1, fp2)) {
+			++size;
+			if (size * 2 > table1.length) {
+				grow();
+			}
+		}
+	}
+
+	@Override
+	public boolean contains(StateType state) {
+		long fp1 = fingerprint1(state);
+		int mask = table1.length - 1;
+		for (int slot = (int) mix(fp1) & mask; table1[slot] != 0; slot = (slot + 1) & mask) {
+			if (table1[slot] == fp1 && (!wide || table2[slot] == tr.fingerprint(state, SEED2))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public double collisionProbability() {
+		double pairs = size * (size - 1.0) / 2;
+		return Math.min(1, pairs / Math.pow(2, wide ? 128 : 64));
+	}
+
+	@Override
+	public String describe() {
+		return (wide ? "128" : "64") + "-bit fingerprints of " + size + " states";
+	}
+
+	private long fingerprint1(StateType state) {
+		long result = tr.fingerprint(state, SEED1);
+		return result != 0 ? result : 1;
+	}
+
+	/**
+	 * Inserts the given fingerprint, unless it is already present.
+	 *
+	 * @return true if the fingerprint was inserted.
+	 */
+	private boolean insert(long fp1, long fp2) {
+		int mask = table1.length - 1;
+		int slot = (int) mix(fp1) & mask;
+		for (; table1[slot] != 0; slot = (slot + 1) & mask) {
+			if (table1[slot] == fp1 && (!wide || table2[slot] == fp2)) {
+				return false;
+			}
+		}
+		table1[slot] = fp1;
+		if (wide) {
+			table2[slot] = fp2;
+		}
+		return true;
+	}
+
+	private void grow() {
+		long[] old1 = table1;
+		long[] old2 = table2;
+		table1 = new long[old1.length * 2];
+		table2 = wide ? new long[table1.length] : null;
+		for (int i = 0; i < old1.length; ++i) {
+			if (old1[i] != 0) {
+				insert(old1[i], wide ? old2[i] : 0);
+			}
+		}
+	}
+}
\ No newline at end of file
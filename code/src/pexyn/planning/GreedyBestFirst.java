@@ -0,0 +1,144 @@
+package pexyn.planning;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * An implementation of greedy best-first search, which always expands an open
+ * node with the least heuristic estimate, ignoring the cost of the path that
+ * led to it.<br>
+ * States are never reopened and goal states are detected as soon as they are
+ * generated, so plans are not necessarily optimal, but they are usually found
+ * after far fewer expansions than A* needs. Nodes with equal estimates are
+ * expanded in the order of their path costs, which keeps the search from
+ * diving into deep paths of states that all look equally close to the goal.
+ * An open node reached via a cheaper path is added again, and its outdated
+ * entries are skipped lazily and counted as duplicate pops, like those of
+ * {@link OpenList}.
+ * Since every generated state is remembered, the search is complete over
+ * finite state spaces.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class GreedyBestFirst<StateType, ActionType> extends AStar<StateType, ActionType> {
+	private static final Comparator<Entry<?, ?>> BY_ESTIMATE_THEN_COST = (first, second) -> {
+		int result = Float.compare(first.fscore, second.fscore);
+		return result != 0 ? result : Float.compare(first.gscore, second.gscore);
+	};
+
+	public GreedyBestFirst(TR<StateType, ActionType> tr, SearchLimits limits) {
+		super(tr, limits);
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		var result = new GreedyBestFirst<>(tr, limits);
+		result.copySettings(this);
+		return result;
+	}
+
+	/**
+	 * Searches with the f-scores of nodes set to their heuristic estimates.
+	 */
+	@Override
+	protected Node<StateType, ActionType> searchNode(StateType initial, Predicate<StateType> goalTest) {
+		statistics = new SearchStatistics();
+		statistics.start();
+		TR<StateType, ActionType> goalTR = statistics.forGoal(tr, goalTest);
+		Map<StateType, Node<StateType, ActionType>> stateToNode = new HashMap<>();
+		var open = new PriorityQueue<Entry<StateType, ActionType>>(BY_ESTIMATE_THEN_COST);
+
+		Node<StateType, ActionType> start = new Node<>(initial, null);
+		start.gscore = 0;
+		start.fscore = statistics.timedEstimate(goalTR, initial);
+		stateToNode.put(initial, start);
+		if (goalTest.test(initial)) {
+			statistics.stop(SearchResultType.OK);
+			return start;
+		}
+		open.add(new Entry<>(start));
+
+		Entry<StateType, ActionType> entry;
+		while ((entry = open.poll()) != null) {
+			if (!entry.isCurrent()) {
+				++statistics.duplicatePops;
+				continue;
+			}
+			Node<StateType, ActionType> current = entry.node;
+			statistics.liveNodes = stateToNode.size();
+			statistics.updateOpenSize(open.size());
+			String exhaustedResource = limits.exhausted(statistics);
+			if (exhaustedResource != null) {
+				statistics.exhaustedResource = exhaustedResource;
+				statistics.stop(SearchResultType.OUT_OF_RESOURCES);
+				return null;
+			}
+
+			current.closed = true;
+			++statistics.expandedNodes;
+			// The successors are computed as they are iterated, so those following a
+			// goal state are never computed.
+			var successors = statistics.timedSuccessorsIterator(goalTR, current.state);
+			while (successors.hasNext()) {
+				var transition = successors.next();
+				StateType nextState = transition.state;
+				++statistics.generatedNodes;
+				Node<StateType, ActionType> known = stateToNode.get(nextState);
+				if (known != null) {
+					float gscore = current.gscore + transition.cost;
+					if (!known.closed && gscore < known.gscore) {
+						known.parent = current;
+						known.computedFrom = transition.action;
+						known.gscore = gscore;
+						open.add(new Entry<>(known));
+					}
+					continue;
+				}
+				float estimate = statistics.timedEstimate(goalTR, nextState);
+				if (estimate >= TR.MAX_COST) {
+					// The goal is unreachable from this state.
+					continue;
+				}
+				Node<StateType, ActionType> next = new Node<>(nextState, current);
+				next.computedFrom = transition.action;
+				next.gscore = current.gscore + transition.cost;
+				next.fscore = estimate;
+				stateToNode.put(nextState, next);
+				if (goalTest.test(nextState)) {
+					statistics.liveNodes = stateToNode.size();
+					statistics.stop(SearchResultType.OK);
+					return next;
+				}
+				open.add(new Entry<>(next));
+			}
+		}
+
+		statistics.stop(SearchResultType.NO_SOLUTION_EXISTS);
+		return null;
+	}
+
+	/**
+	 * A node along with the scores it had when it was added.
+	 */
+	private static class Entry<StateType, ActionType> extends BucketOpenList.Entry<StateType, ActionType> {
+		public final float gscore;
+
+		public Entry(Node<StateType, ActionType> node) {
+			super(node);
+			this.gscore = node.gscore;
+		}
+
+		@Override
+		public boolean isCurrent() {
+			return super.isCurrent() && node.gscore == gscore;
+		}
+	}
+}
\ No newline at end of file
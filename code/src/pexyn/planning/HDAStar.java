@@ -0,0 +1,328 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+
+/**
+ * An implementation of Hash-Distributed A* (HDA*), which runs A* on several
+ * threads. Each state is owned by the thread determined by the hash code of
+ * the state. A thread keeps the search nodes of the states it owns in a
+ * private map and a private open list, and sends generated states that it does
+ * not own to their owners via lock-free queues.<br>
+ * The search continues after finding the first goal state until no thread has
+ * a node whose f-score is smaller than the cost of the best goal found so far,
+ * which guarantees that the resulting plans are optimal for admissible
+ * heuristics.<br>
+ * The transition relation and the goal test must be safe to use from several
+ * threads concurrently.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class HDAStar<StateType, ActionType> extends AStar<StateType, ActionType> {
+	/**
+	 * The number of threads used by each search.
+	 */
+	protected final int numThreads;
+
+	/**
+	 * Constructs an instance of the algorithm for the given transition system,
+	 * which uses the given number of threads.
+	 */
+	public HDAStar(TR<StateType, ActionType> tr, SearchLimits limits, int numThreads) {
+		super(tr, limits);
+		assert numThreads > 0;
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		var result = new HDAStar<>(tr, limits, numThreads);
+		result.copySettings(this);
+		return result;
+	}
+
+	@Override
+	protected Node<StateType, ActionType> searchNode(StateType initial, Predicate<StateType> goalTest) {
+		statistics = new SearchStatistics();
+		statistics.start();
+		var search = new Search(goalTest);
+		return search.run(initial);
+	}
+
+	/**
+	 * A request to add a state to the open list of its owner.
+	 */
+	private static class Message<StateType, ActionType> {
+		public final StateType state;
+		public final Node<StateType, ActionType> parent;
+		public final ActionType action;
+		public final float gscore;
+		public final float fscore;
+
+		public Message(StateType state, Node<StateType, ActionType> parent, ActionType action, float gscore,
+				float fscore) {
+			this.state = state;
+			this.parent = parent;
+			this.action = action;
+			this.gscore = gscore;
+			this.fscore = fscore;
+		}
+	}
+
+	/**
+	 * The state shared by the workers of a single search.
+	 */
+	private class Search {
+		private final Predicate<StateType> goalTest;
+		private final TR<StateType, ActionType> goalTR;
+		private final List<Worker> workers;
+
+		/**
+		 * Counts the messages that have not been received yet plus the workers that
+		 * have nodes to expand. The search terminates when it drops to zero.
+		 */
+		private final AtomicLong work = new AtomicLong();
+
+		private final AtomicLong expandedNodes = new AtomicLong();
+		private final AtomicLong liveNodes = new AtomicLong();
+
+		private volatile boolean stop = false;
+		private volatile String exhaustedResource = null;
+		private volatile Throwable failure = null;
+
+		/**
+		 * The cheapest goal node found so far.
+		 */
+		private Node<StateType, ActionType> incumbent = null;
+		private volatile float incumbentCost = Node.MAX_SCORE;
+
+		public Search(Predicate<StateType> goalTest) {
+			this.goalTest = goalTest;
+			this.goalTR = statistics.forGoal(tr, goalTest);
+			workers = new ArrayList<>(numThreads);
+			for (int i = 0; i < numThreads; ++i) {
+				workers.add(new Worker());
+			}
+		}
+
+		public Node<StateType, ActionType> run(StateType initial) {
+			send(new Message<>(initial, null, null, 0, statistics.timedEstimate(goalTR, initial)));
+
+			var threads = new Thread[numThreads];
+			for (int i = 0; i < numThreads; ++i) {
+				threads[i] = new Thread(workers.get(i), "HDA*-worker-" + i);
+				threads[i].start();
+			}
+			// An interrupt stops the workers, which are then joined
+			// uninterruptibly, so that their results are complete.
+			boolean interrupted = false;
+			for (var thread : threads) {
+				while (true) {
+					try {
+						thread.join();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+						stop = true;
+					}
+				}
+			}
+			if (interrupted) {
+				if (exhaustedResource == null) {
+					exhaustedResource = "interrupted";
+				}
+				Thread.currentThread().interrupt();
+			}
+
+			if (failure != null) {
+				if (failure instanceof RuntimeException) {
+					throw (RuntimeException) failure;
+				} else if (failure instanceof Error) {
+					throw (Error) failure;
+				} else {
+					throw new Error(failure);
+				}
+			}
+
+			for (var worker : workers) {
+				statistics.expandedNodes += worker.stats.expandedNodes;
+				statistics.generatedNodes += worker.stats.generatedNodes;
+				statistics.heuristicNanos += worker.stats.heuristicNanos;
+				statistics.successorNanos += worker.stats.successorNanos;
+				statistics.duplicatePops += worker.open.duplicatePops();
+				statistics.maxOpenSize = Math.max(statistics.maxOpenSize, worker.stats.maxOpenSize);
+			}
+			statistics.liveNodes = liveNodes.get();
+			if (exhaustedResource != null) {
+				statistics.exhaustedResource = exhaustedResource;
+				statistics.stop(SearchResultType.OUT_OF_RESOURCES);
+				return null;
+			} else if (incumbent != null) {
+				statistics.stop(SearchResultType.OK);
+				return incumbent;
+			} else {
+				statistics.stop(SearchResultType.NO_SOLUTION_EXISTS);
+				return null;
+			}
+		}
+
+		/**
+		 * Sends the given message to the owner of its state.
+		 */
+		private void send(Message<StateType, ActionType> message) {
+			work.incrementAndGet();
+			owner(message.state).inbox.add(message);
+		}
+
+		private Worker owner(StateType state) {
+			int hash = state.hashCode();
+			// Spread the bits of the hash code, since many hash codes
+			// differ only in their high bits.
+			hash ^= (hash >>> 16);
+			hash *= 0x85ebca6b;
+			hash ^= (hash >>> 13);
+			return workers.get(Math.floorMod(hash, numThreads));
+		}
+
+		private synchronized void offerGoal(Node<StateType, ActionType> goalNode) {
+			if (goalNode.gscore < incumbentCost) {
+				incumbent = goalNode;
+				incumbentCost = goalNode.gscore;
+			}
+		}
+
+		/**
+		 * Runs A* over the states owned by a single thread.
+		 */
+		private class Worker implements Runnable {
+			private final ConcurrentLinkedQueue<Message<StateType, ActionType>> inbox = new ConcurrentLinkedQueue<>();
+			private final Map<StateType, Node<StateType, ActionType>> stateToNode = new HashMap<>();
+			private final OpenList<StateType, ActionType> open = openListPolicy.create();
+			private final SearchStatistics stats = new SearchStatistics();
+
+			/**
+			 * Indicates whether this worker is accounted for in the work counter.
+			 */
+			private boolean busy = false;
+
+			@Override
+			public void run() {
+				try {
+					while (!stop) {
+						receiveAll();
+						Node<StateType, ActionType> current = nextNode();
+						if (current == null) {
+							if (busy) {
+								busy = false;
+								work.decrementAndGet();
+							}
+							if (work.get() == 0) {
+								return;
+							}
+							Thread.onSpinWait();
+						} else {
+							expand(current);
+						}
+					}
+				} catch (Throwable t) {
+					failure = t;
+					stop = true;
+				}
+			}
+
+			private void receiveAll() {
+				Message<StateType, ActionType> message;
+				while ((message = inbox.poll()) != null) {
+					if (!busy) {
+						// Must be accounted for before the message is,
+						// to avoid a false detection of termination.
+						busy = true;
+						work.incrementAndGet();
+					}
+					relax(message.state, message.parent, message.action, message.gscore, message.fscore);
+					work.decrementAndGet();
+				}
+			}
+
+			/**
+			 * Returns the next node to expand, or null if there is no node that
+			 * can lead to a goal cheaper than the best one found so far.
+			 */
+			private Node<StateType, ActionType> nextNode() {
+				Node<StateType, ActionType> node = open.poll();
+				if (node == null || node.fscore >= incumbentCost) {
+					// The open list is ordered by f-scores, so all remaining nodes
+					// are useless as well.
+					return null;
+				}
+				return node;
+			}
+
+			private void relax(StateType state, Node<StateType, ActionType> parent, ActionType action, float gscore,
+					float fscore) {
+				Node<StateType, ActionType> node = stateToNode.get(state);
+				if (node == null) {
+					node = new Node<>(state, parent);
+					stateToNode.put(state, node);
+					liveNodes.incrementAndGet();
+				} else if (gscore >= node.gscore) {
+					return;
+				}
+				// Nodes are reopened when a cheaper path is found, since threads
+				// may expand nodes before their optimal paths are known.
+				node.parent = parent;
+				node.computedFrom = action;
+				node.gscore = gscore;
+				node.fscore = fscore;
+				node.closed = false;
+				open.add(node);
+				stats.updateOpenSize(open.size());
+			}
+
+			private void expand(Node<StateType, ActionType> current) {
+				StateType currentState = current.state;
+				current.closed = true;
+				if (goalTest.test(currentState)) {
+					offerGoal(current);
+					return;
+				}
+
+				++stats.expandedNodes;
+				String exhausted = limits.exhausted(expandedNodes.incrementAndGet(), liveNodes.get(),
+						statistics.elapsedMillis());
+				if (exhausted != null) {
+					exhaustedResource = exhausted;
+					stop = true;
+					return;
+				}
+
+				for (var transition : stats.timedSuccessors(goalTR, currentState)) {
+					ActionType action = transition.action;
+					StateType nextState = transition.state;
+					++stats.generatedNodes;
+					float gscore = current.gscore + transition.cost;
+					float fscore = gscore + stats.timedEstimate(goalTR, nextState);
+					if (fscore >= incumbentCost) {
+						continue;
+					}
+					if (owner(nextState) == this) {
+						relax(nextState, current, action, gscore, fscore);
+					} else {
+						send(new Message<>(nextState, current, action, gscore, fscore));
+					}
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,203 @@
+package pexyn.planning;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An implementation of iterative-deepening A* (IDA*), which runs in memory
+ * linear in the length of the plan, plus a transposition table of a fixed
+ * size.<br>
+ * Each iteration performs a depth-first search that prunes nodes whose f-score
+ * exceeds a threshold, starting with the heuristic estimate of the initial
+ * state and raising it to the smallest pruned f-score after each unsuccessful
+ * iteration. The transposition table remembers the cheapest path cost with
+ * which a state was expanded in the current iteration, and is used to avoid
+ * re-expanding states reached via costlier paths. Expansions of states that
+ * the table reveals as already expanded in the current iteration, via a
+ * costlier path, are reported as re-expansions. The depth-first search keeps
+ * its path on an explicit stack, so long plans do not overflow the call stack.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class IDAStar<StateType, ActionType> extends AStar<StateType, ActionType> {
+	/**
+	 * The number of entries in the transposition table.
+	 */
+	protected final int transpositionTableSize;
+
+	private Object[] ttStates;
+	private float[] ttGScores;
+	private int[] ttIterations;
+
+	private TR<StateType, ActionType> goalTR;
+	private Predicate<StateType> goalTest;
+	private final Set<StateType> onPath = new HashSet<>();
+	private int iteration;
+	private float nextThreshold;
+	private boolean aborted;
+
+	/**
+	 * Constructs an instance of the algorithm for the given transition system,
+	 * with a transposition table of the given size.
+	 */
+	public IDAStar(TR<StateType, ActionType> tr, SearchLimits limits, int transpositionTableSize) {
+		super(tr, limits);
+		assert transpositionTableSize > 0;
+		this.transpositionTableSize = transpositionTableSize;
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		return new IDAStar<>(tr, limits, transpositionTableSize);
+	}
+
+	@Override
+	protected Node<StateType, ActionType> searchNode(StateType initial, Predicate<StateType> goalTest) {
+		statistics = new SearchStatistics();
+		statistics.start();
+		this.goalTest = goalTest;
+		this.goalTR = statistics.forGoal(tr, goalTest);
+		if (ttStates == null) {
+			ttStates = new Object[transpositionTableSize];
+			ttGScores = new float[transpositionTableSize];
+			ttIterations = new int[transpositionTableSize];
+		} else {
+			Arrays.fill(ttStates, null);
+		}
+		aborted = false;
+
+		try {
+			Node<StateType, ActionType> root = new Node<>(initial, null);
+			root.gscore = 0;
+			root.fscore = statistics.timedEstimate(goalTR, initial);
+			float threshold = root.fscore;
+			for (iteration = 1;; ++iteration) {
+				nextThreshold = Node.MAX_SCORE;
+				onPath.clear();
+				Node<StateType, ActionType> result = search(root, threshold);
+				if (result != null) {
+					statistics.stop(SearchResultType.OK);
+					return result;
+				} else if (aborted) {
+					return null;
+				} else if (nextThreshold >= TR.MAX_COST) {
+					// No pruned node can lead to a goal.
+					statistics.stop(SearchResultType.NO_SOLUTION_EXISTS);
+					return null;
+				}
+				threshold = nextThreshold;
+			}
+		} finally {
+			onPath.clear();
+		}
+	}
+
+	/**
+	 * Searches for a goal node reachable from the given node via nodes whose
+	 * f-score does not exceed the given threshold.
+	 */
+	private Node<StateType, ActionType> search(Node<StateType, ActionType> root, float threshold) {
+		var path = new ArrayDeque<Frame<StateType, ActionType>>();
+		Node<StateType, ActionType> result = visit(root, threshold, path);
+		while (result == null && !aborted && !path.isEmpty()) {
+			var frame = path.peek();
+			if (!frame.successors.hasNext()) {
+				onPath.remove(frame.node.state);
+				path.pop();
+				continue;
+			}
+			var transition = frame.successors.next();
+			StateType nextState = transition.state;
+			++statistics.generatedNodes;
+			if (onPath.contains(nextState)) {
+				continue;
+			}
+			Node<StateType, ActionType> child = new Node<>(nextState, frame.node);
+			child.computedFrom = transition.action;
+			child.gscore = frame.node.gscore + transition.cost;
+			child.fscore = child.gscore + statistics.timedEstimate(goalTR, nextState);
+			result = visit(child, threshold, path);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the given node if it is a goal node, and otherwise expands it,
+	 * unless it is pruned, by pushing it along with its successors on the given
+	 * path.
+	 */
+	private Node<StateType, ActionType> visit(Node<StateType, ActionType> node, float threshold,
+			ArrayDeque<Frame<StateType, ActionType>> path) {
+		if (node.fscore > threshold) {
+			nextThreshold = Math.min(nextThreshold, node.fscore);
+			return null;
+		}
+		StateType state = node.state;
+		if (goalTest.test(state)) {
+			return node;
+		}
+		if (!record(state, node.gscore)) {
+			return null;
+		}
+
+		statistics.liveNodes = onPath.size();
+		String exhaustedResource = limits.exhausted(statistics);
+		if (exhaustedResource != null) {
+			statistics.exhaustedResource = exhaustedResource;
+			statistics.stop(SearchResultType.OUT_OF_RESOURCES);
+			aborted = true;
+			return null;
+		}
+
+		++statistics.expandedNodes;
+		onPath.add(state);
+		path.push(new Frame<>(node, statistics.timedSuccessorsIterator(goalTR, state)));
+		return null;
+	}
+
+	/**
+	 * Records the expansion of the given state in the transposition table.
+	 *
+	 * @return false if the state has already been expanded in the current
+	 *         iteration via a path that is at least as cheap.
+	 */
+	private boolean record(StateType state, float gscore) {
+		int hash = state.hashCode();
+		hash ^= (hash >>> 16);
+		int slot = Math.floorMod(hash, transpositionTableSize);
+		if (ttIterations[slot] == iteration && state.equals(ttStates[slot])) {
+			if (ttGScores[slot] <= gscore) {
+				return false;
+			}
+			// Expanding the state again via a cheaper path.
+			++statistics.reexpandedNodes;
+		}
+		ttStates[slot] = state;
+		ttGScores[slot] = gscore;
+		ttIterations[slot] = iteration;
+		return true;
+	}
+
+	/**
+	 * A node on the path of the depth-first search, along with its successors
+	 * that have not been searched yet.
+	 */
+	private static class Frame<StateType, ActionType> {
+		public final Node<StateType, ActionType> node;
+		public final Iterator<Transition<StateType, ActionType>> successors;
+
+		public Frame(Node<StateType, ActionType> node, Iterator<Transition<StateType, ActionType>> successors) {
+			this.node = node;
+			this.successors = successors;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package pexyn.planning;
+
+import java.util.function.Predicate;
+
+/**
+ * An A* planner for sequences of related searches, such as the consecutive
+ * steps of an example, which keeps the explored search graph between the
+ * searches of a session. Consecutive goals of an example share most of their
+ * reachable states, so later searches mostly traverse the kept graph instead
+ * of recomputing enabled actions and successors. Each search still computes
+ * its own heuristic values and path costs, since both the goal and the
+ * initial state differ.<br>
+ * A single search expands each state once, so the first search of a session
+ * does not keep its graph, and sessions of one search cost nothing extra. Use
+ * {@link #newSession()} to start a session with an empty graph. The graph is
+ * discarded when it reaches the given bound on kept transitions, and before a
+ * search when its states reach the live-nodes limit. The graph keeps full
+ * states, so it is meant for exact duplicate detection.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class IncrementalAStar<StateType, ActionType> extends AStar<StateType, ActionType> {
+	/**
+	 * The underlying transition relation.
+	 */
+	protected final TR<StateType, ActionType> baseTR;
+
+	/**
+	 * The search graph kept between searches.
+	 */
+	protected final CachingTR<StateType, ActionType> cachingTR;
+
+	/**
+	 * The number of searches in this session so far.
+	 */
+	private int searches = 0;
+
+	/**
+	 * Constructs a planner that keeps at most the given number of transitions
+	 * between searches.
+	 */
+	public IncrementalAStar(TR<StateType, ActionType> tr, SearchLimits limits, int maxCachedTransitions) {
+		this(new CachingTR<>(tr, maxCachedTransitions), tr, limits);
+	}
+
+	private IncrementalAStar(CachingTR<StateType, ActionType> cachingTR, TR<StateType, ActionType> baseTR,
+			SearchLimits limits) {
+		super(cachingTR, limits);
+		this.cachingTR = cachingTR;
+		this.baseTR = baseTR;
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		var result = new IncrementalAStar<>(baseTR, limits, cachingTR.maxTransitions);
+		result.copySettings(this);
+		return result;
+	}
+
+	@Override
+	protected Node<StateType, ActionType> searchNode(StateType initial, Predicate<StateType> goalTest) {
+		if (limits.maxLiveNodes >= 0 && cachingTR.size() >= limits.maxLiveNodes) {
+			cachingTR.clear();
+		}
+		cachingTR.setRecording(searches++ > 0);
+		long hitsBefore = cachingTR.hits();
+		var result = super.searchNode(initial, goalTest);
+		statistics.reusedExpansions = cachingTR.hits() - hitsBefore;
+		return result;
+	}
+}
\ No newline at end of file
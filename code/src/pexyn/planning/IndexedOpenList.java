@@ -0,0 +1,108 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+
+import pexyn.planning.AStar.Node;
+
+/**
+ * An open list implemented as a binary heap that records the position of each
+ * node, which allows decreasing the key of a node in place when a cheaper path
+ * to it is found. The list therefore never contains outdated entries. Nodes
+ * are ordered like in {@link TieBreakingOpenList}, except that ties between
+ * nodes with equal scores are broken arbitrarily.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class IndexedOpenList<StateType, ActionType> implements OpenList<StateType, ActionType> {
+	private final ArrayList<Node<StateType, ActionType>> heap = new ArrayList<>();
+
+	@Override
+	public void add(Node<StateType, ActionType> node) {
+		if (node.heapIndex < 0) {
+			node.heapIndex = heap.size();
+			heap.add(node);
+			siftUp(node.heapIndex);
+		} else {
+			// The score may have changed in either direction.
+			siftDown(siftUp(node.heapIndex));
+		}
+	}
+
+	@Override
+	public Node<StateType, ActionType> poll() {
+		if (heap.isEmpty()) {
+			return null;
+		}
+		var result = heap.get(0);
+		var last = heap.remove(heap.size() - 1);
+		if (last != result) {
+			place(last, 0);
+			siftDown(0);
+		}
+		result.heapIndex = -1;
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return heap.size();
+	}
+
+	@Override
+	public long duplicatePops() {
+		return 0;
+	}
+
+	private int siftUp(int index) {
+		var node = heap.get(index);
+		while (index > 0) {
+			int parentIndex = (index - 1) / 2;
+			var parent = heap.get(parentIndex);
+			if (!less(node, parent)) {
+				break;
+			}
+			place(parent, index);
+			index = parentIndex;
+		}
+		place(node, index);
+		return index;
+	}
+
+	private void siftDown(int index) {
+		var node = heap.get(index);
+		int size = heap.size();
+		while (true) {
+			int childIndex = 2 * index + 1;
+			if (childIndex >= size) {
+				break;
+			}
+			if (childIndex + 1 < size && less(heap.get(childIndex + 1), heap.get(childIndex))) {
+				++childIndex;
+			}
+			var child = heap.get(childIndex);
+			if (!less(child, node)) {
+				break;
+			}
+			place(child, index);
+			index = childIndex;
+		}
+		place(node, index);
+	}
+
+	private void place(Node<StateType, ActionType> node, int index) {
+		heap.set(index, node);
+		node.heapIndex = index;
+	}
+
+	private static boolean less(Node<?, ?> first, Node<?, ?> second) {
+		if (first.fscore != second.fscore) {
+			return first.fscore < second.fscore;
+		}
+		return first.fscore - first.gscore < second.fscore - second.gscore;
+	}
+}
\ No newline at end of file
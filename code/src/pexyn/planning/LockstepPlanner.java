@@ -0,0 +1,88 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import pexyn.ArrayListTrace;
+import pexyn.Trace;
+
+/**
+ * Finds a single action sequence that leads each of several input states to a
+ * state satisfying its own goal, by planning over a {@link MultiProductTR}
+ * whose components are the given transition relation. This serves examples
+ * that are expected to share their plans, in one search instead of one search
+ * per example.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class LockstepPlanner<StateType, ActionType> {
+	protected final TR<StateType, ActionType> tr;
+
+	/**
+	 * Creates a planner over a given product of transition relations.
+	 */
+	protected final Function<TR<ProductState<StateType>, ActionType>, Planner<ProductState<StateType>, ActionType>> plannerFactory;
+
+	private Optional<SearchStatistics> lastStatistics = Optional.empty();
+
+	public LockstepPlanner(TR<StateType, ActionType> tr,
+			Function<TR<ProductState<StateType>, ActionType>, Planner<ProductState<StateType>, ActionType>> plannerFactory) {
+		this.tr = tr;
+		this.plannerFactory = plannerFactory;
+	}
+
+	/**
+	 * Attempts to find an action sequence that leads each of the given input
+	 * states to a state satisfying the respective goal.
+	 *
+	 * @param addToPlans
+	 *            If a plan is found, its projection on each input is appended to
+	 *            the respective plan.
+	 * @return The result of the search.
+	 */
+	public SearchResultType findPlans(List<StateType> inputs, List<Predicate<StateType>> goals,
+			List<Trace<StateType, ActionType>> addToPlans) {
+		assert inputs.size() == goals.size() && inputs.size() == addToPlans.size();
+		var productTR = new MultiProductTR<>(Collections.nCopies(inputs.size(), tr));
+		var planner = plannerFactory.apply(productTR);
+		var input = ProductState.of(inputs);
+		Trace<ProductState<StateType>, ActionType> productPlan = new ArrayListTrace<>(input);
+		SearchResultType result;
+		try {
+			result = planner.findPlan(input, new MultiProductTR.Goal<>(goals), productPlan);
+			lastStatistics = planner.lastStatistics();
+		} finally {
+			planner.endSession();
+		}
+		if (result == SearchResultType.OK) {
+			for (int i = 0; i < inputs.size(); ++i) {
+				var states = new ArrayList<StateType>(productPlan.size());
+				var actions = new ArrayList<ActionType>(productPlan.size());
+				for (var state : productPlan.states()) {
+					states.add(state.get(i));
+				}
+				for (var action : productPlan.actions()) {
+					actions.add(action);
+				}
+				addToPlans.get(i).appendPlan(new ArrayListTrace<>(states, actions));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the statistics of the last search, if available.
+	 */
+	public Optional<SearchStatistics> lastStatistics() {
+		return lastStatistics;
+	}
+}
\ No newline at end of file
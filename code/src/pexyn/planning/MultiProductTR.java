@@ -0,0 +1,404 @@
+package pexyn.planning;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import pexyn.planning.ProductTR.CostCombiner;
+
+/**
+ * The product of any number of transition relations over the same states and
+ * actions, e.g., one per example, whose transitions take the same action in
+ * all the components at once (lockstep). A path of the product is therefore an
+ * action sequence that applies to all the components.<br>
+ * Enabled actions are intersected as bit sets over an action index shared by
+ * the components, and the intersection stops as soon as it becomes empty. The
+ * successors of a product state are generated lazily, as they are iterated.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states of the components.
+ * @param <ActionType>
+ *            The type of actions of the components.
+ */
+public class MultiProductTR<StateType, ActionType> implements TR<ProductState<StateType>, ActionType> {
+	protected final List<TR<StateType, ActionType>> trs;
+	protected final CostCombiner costCombiner;
+	protected final ActionIndex<ActionType> actionIndex;
+
+	/**
+	 * Assigns consecutive integers to actions, for representing sets of actions
+	 * as bit sets.
+	 *
+	 * @author romanm
+	 */
+	public static class ActionIndex<ActionType> {
+		private final ConcurrentHashMap<ActionType, Integer> ids = new ConcurrentHashMap<>();
+
+		/**
+		 * Returns the integer of the given action, assigning one if needed.
+		 */
+		public int of(ActionType action) {
+			var id = ids.get(action);
+			if (id == null) {
+				synchronized (this) {
+					id = ids.computeIfAbsent(action, k -> ids.size());
+				}
+			}
+			return id;
+		}
+
+		/**
+		 * Returns the number of indexed actions.
+		 */
+		public int size() {
+			return ids.size();
+		}
+	}
+
+	/**
+	 * A goal of a product, which holds when each component satisfies its own
+	 * goal.
+	 *
+	 * @author romanm
+	 */
+	public static class Goal<StateType> implements Predicate<ProductState<StateType>> {
+		public final List<Predicate<StateType>> goals;
+
+		public Goal(List<Predicate<StateType>> goals) {
+			this.goals = goals;
+		}
+
+		@Override
+		public boolean test(ProductState<StateType> state) {
+			for (int i = 0; i < goals.size(); ++i) {
+				if (!goals.get(i).test(state.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	public MultiProductTR(List<? extends TR<StateType, ActionType>> trs) {
+		this(trs, ProductTR.MAX_COMBINER);
+	}
+
+	public MultiProductTR(List<? extends TR<StateType, ActionType>> trs, CostCombiner costCombiner) {
+		this(trs, costCombiner, new ActionIndex<>());
+	}
+
+	protected MultiProductTR(List<? extends TR<StateType, ActionType>> trs, CostCombiner costCombiner,
+			ActionIndex<ActionType> actionIndex) {
+		assert !trs.isEmpty();
+		this.trs = List.copyOf(trs);
+		this.costCombiner = costCombiner;
+		this.actionIndex = actionIndex;
+	}
+
+	/**
+	 * Returns the number of components.
+	 */
+	public int size() {
+		return trs.size();
+	}
+
+	@Override
+	public Collection<ActionType> enabledActions(ProductState<StateType> state) {
+		BitSet common = null;
+		List<ActionType> firstActions = new ArrayList<>();
+		for (int i = 0; i < trs.size(); ++i) {
+			var ids = new BitSet();
+			var iter = trs.get(i).enabledActionsIterator(state.get(i));
+			while (iter.hasNext()) {
+				var action = iter.next();
+				if (i == 0) {
+					firstActions.add(action);
+				}
+				ids.set(actionIndex.of(action));
+			}
+			if (common == null) {
+				common = ids;
+			} else {
+				common.and(ids);
+			}
+			if (common.isEmpty()) {
+				return Collections.emptyList();
+			}
+		}
+		var result = new ArrayList<ActionType>(common.cardinality());
+		for (var action : firstActions) {
+			if (common.get(actionIndex.of(action))) {
+				result.add(action);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public float transitionCost(ProductState<StateType> src, ActionType action, ProductState<StateType> dst) {
+		float result = trs.get(0).transitionCost(src.get(0), action, dst.get(0));
+		for (int i = 1; i < trs.size(); ++i) {
+			result = costCombiner.combine(result, trs.get(i).transitionCost(src.get(i), action, dst.get(i)));
+		}
+		return result;
+	}
+
+	@Override
+	public Collection<ProductState<StateType>> apply(ProductState<StateType> state, ActionType action) {
+		int n = trs.size();
+		var dsts = new ArrayList<List<StateType>>(n);
+		for (int i = 0; i < n; ++i) {
+			var componentDsts = toList(trs.get(i).apply(state.get(i), action));
+			if (componentDsts.isEmpty()) {
+				return Collections.emptyList();
+			}
+			dsts.add(componentDsts);
+		}
+		var result = new ArrayList<ProductState<StateType>>(1);
+		var pos = new int[n];
+		while (true) {
+			var components = new Object[n];
+			for (int i = 0; i < n; ++i) {
+				components[i] = dsts.get(i).get(pos[i]);
+			}
+			result.add(new ProductState<>(components));
+			int i = n - 1;
+			while (i >= 0 && ++pos[i] == dsts.get(i).size()) {
+				pos[i--] = 0;
+			}
+			if (i < 0) {
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Computes the successors of each component, stopping as soon as no action
+	 * is common to all the components computed so far. The combined
+	 * transitions are created as they are iterated.
+	 */
+	@Override
+	public Collection<Transition<ProductState<StateType>, ActionType>> successors(ProductState<StateType> state) {
+		int n = trs.size();
+		var transitions = new ArrayList<List<Transition<StateType, ActionType>>>(n);
+		var ids = new int[n][];
+		BitSet common = null;
+		for (int i = 0; i < n; ++i) {
+			var componentTransitions = toList(trs.get(i).successors(state.get(i)));
+			var componentIds = new int[componentTransitions.size()];
+			var idSet = new BitSet();
+			for (int k = 0; k < componentIds.length; ++k) {
+				componentIds[k] = actionIndex.of(componentTransitions.get(k).action);
+				idSet.set(componentIds[k]);
+			}
+			if (common == null) {
+				common = idSet;
+			} else {
+				common.and(idSet);
+			}
+			if (common.isEmpty()) {
+				return Collections.emptyList();
+			}
+			transitions.add(componentTransitions);
+			ids[i] = componentIds;
+		}
+		return new Successors(transitions, ids, common);
+	}
+
+	/**
+	 * Combines the estimates of the components like their costs, which yields a
+	 * lower bound as long as the cost combiner is monotone and the estimates of
+	 * the components are lower bounds.
+	 */
+	@Override
+	public float estimateDistToGoal(ProductState<StateType> state) {
+		float result = trs.get(0).estimateDistToGoal(state.get(0));
+		for (int i = 1; i < trs.size(); ++i) {
+			if (result == MAX_COST) {
+				break;
+			}
+			result = costCombiner.combine(result, trs.get(i).estimateDistToGoal(state.get(i)));
+		}
+		return result;
+	}
+
+	@Override
+	public long fingerprint(ProductState<StateType> state, long seed) {
+		long result = seed;
+		for (int i = 0; i < trs.size(); ++i) {
+			result = result * 0x9e3779b97f4a7c15L + trs.get(i).fingerprint(state.get(i), seed);
+		}
+		return result;
+	}
+
+	/**
+	 * Specializes each component for its own goal, when the given goal is a
+	 * {@link Goal}.
+	 */
+	@Override
+	public TR<ProductState<StateType>, ActionType> forGoal(Predicate<ProductState<StateType>> goalTest) {
+		if (!(goalTest instanceof Goal)) {
+			return this;
+		}
+		var goals = ((Goal<StateType>) goalTest).goals;
+		assert goals.size() == trs.size();
+		var goalTRs = new ArrayList<TR<StateType, ActionType>>(trs.size());
+		for (int i = 0; i < trs.size(); ++i) {
+			goalTRs.add(trs.get(i).forGoal(goals.get(i)));
+		}
+		return new MultiProductTR<>(goalTRs, costCombiner, actionIndex);
+	}
+
+	/**
+	 * Returns the number of actions pruned by all the components.
+	 */
+	@Override
+	public int prunedActions() {
+		int result = 0;
+		for (var componentTR : trs) {
+			result += componentTR.prunedActions();
+		}
+		return result;
+	}
+
+	private static <T> List<T> toList(Collection<T> collection) {
+		return collection instanceof List ? (List<T>) collection : new ArrayList<>(collection);
+	}
+
+	/**
+	 * The transitions of a product state, combined from the transitions of the
+	 * components that take common actions, in the order of the first component.
+	 */
+	private class Successors extends AbstractCollection<Transition<ProductState<StateType>, ActionType>> {
+		private final List<List<Transition<StateType, ActionType>>> transitions;
+		private final int[][] ids;
+		private final BitSet common;
+
+		/**
+		 * For each component but the first, the position of the first transition
+		 * of each common action, and the position of the next transition with the
+		 * same action, or -1.
+		 */
+		private int[][] heads;
+		private int[][] nexts;
+
+		public Successors(List<List<Transition<StateType, ActionType>>> transitions, int[][] ids, BitSet common) {
+			this.transitions = transitions;
+			this.ids = ids;
+			this.common = common;
+		}
+
+		private void group() {
+			if (heads != null) {
+				return;
+			}
+			int n = ids.length;
+			int width = common.length();
+			heads = new int[n][];
+			nexts = new int[n][];
+			for (int i = 1; i < n; ++i) {
+				var head = new int[width];
+				Arrays.fill(head, -1);
+				var next = new int[ids[i].length];
+				for (int k = next.length - 1; k >= 0; --k) {
+					int id = ids[i][k];
+					if (common.get(id)) {
+						next[k] = head[id];
+						head[id] = k;
+					}
+				}
+				heads[i] = head;
+				nexts[i] = next;
+			}
+		}
+
+		@Override
+		public int size() {
+			group();
+			int result = 0;
+			for (int id : ids[0]) {
+				if (common.get(id)) {
+					int combinations = 1;
+					for (int i = 1; i < ids.length; ++i) {
+						int count = 0;
+						for (int k = heads[i][id]; k >= 0; k = nexts[i][k]) {
+							++count;
+						}
+						combinations *= count;
+					}
+					result += combinations;
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public Iterator<Transition<ProductState<StateType>, ActionType>> iterator() {
+			group();
+			return new Iterator<Transition<ProductState<StateType>, ActionType>>() {
+				private final int n = ids.length;
+				private final int[] pos = new int[n];
+				private int first = -1;
+				private boolean ready = false;
+
+				@Override
+				public boolean hasNext() {
+					if (!ready) {
+						while (++first < ids[0].length) {
+							int id = ids[0][first];
+							if (common.get(id)) {
+								for (int i = 1; i < n; ++i) {
+									pos[i] = heads[i][id];
+								}
+								ready = true;
+								break;
+							}
+						}
+					}
+					return ready;
+				}
+
+				@Override
+				public Transition<ProductState<StateType>, ActionType> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					var firstTransition = transitions.get(0).get(first);
+					var components = new Object[n];
+					components[0] = firstTransition.state;
+					float cost = firstTransition.cost;
+					for (int i = 1; i < n; ++i) {
+						var transition = transitions.get(i).get(pos[i]);
+						components[i] = transition.state;
+						cost = costCombiner.combine(cost, transition.cost);
+					}
+
+					// Move to the next combination of transitions with this action.
+					int id = ids[0][first];
+					int i = n - 1;
+					for (; i >= 1; --i) {
+						pos[i] = nexts[i][pos[i]];
+						if (pos[i] >= 0) {
+							break;
+						}
+						pos[i] = heads[i][id];
+					}
+					if (i < 1) {
+						ready = false;
+					}
+					return new Transition<>(firstTransition.action, new ProductState<>(components), cost);
+				}
+			};
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package pexyn.planning;
+
+import pexyn.planning.AStar.Node;
+
+/**
+ * The list of nodes waiting to be expanded by a best-first search, ordered by
+ * their f-scores.<br>
+ * A node may be added again after its scores have improved. Implementations
+ * that do not update entries in place skip the outdated entries lazily, i.e.,
+ * entries whose node has been closed or whose f-score has changed since the
+ * entry was added, and count them as duplicate pops.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public interface OpenList<StateType, ActionType> {
+	/**
+	 * Adds the given node according to its current scores, or updates its
+	 * position if it is already in the list.
+	 */
+	public void add(Node<StateType, ActionType> node);
+
+	/**
+	 * Removes and returns an open node with the least f-score, or null if there
+	 * is none.
+	 */
+	public Node<StateType, ActionType> poll();
+
+	/**
+	 * Returns the number of entries in the list, including outdated ones.
+	 */
+	public int size();
+
+	/**
+	 * Returns the number of outdated entries skipped so far.
+	 */
+	public long duplicatePops();
+
+	/**
+	 * The ways to order nodes with equal f-scores.
+	 */
+	public static enum Policy {
+		/**
+		 * Prefers nodes with lower heuristic estimates, i.e., nodes that are closer
+		 * to the goal.
+		 */
+		FH,
+
+		/**
+		 * Prefers the most recently added nodes.
+		 */
+		LIFO,
+
+		/**
+		 * Prefers nodes with lower heuristic estimates, like {@link #FH}, and keeps
+		 * a single entry per node, updated in place when its scores improve.
+		 */
+		INDEXED;
+
+		public <StateType, ActionType> OpenList<StateType, ActionType> create() {
+			switch (this) {
+			case FH:
+				return new TieBreakingOpenList<>();
+			case LIFO:
+				return new BucketOpenList<>();
+			case INDEXED:
+				return new IndexedOpenList<>();
+			default:
+				throw new Error("Unexpected open list policy: " + this);
+			}
+		}
+
+		/**
+		 * Returns the policy with the given name, ignoring case.
+		 */
+		public static Policy of(String name) {
+			for (var policy : values()) {
+				if (policy.name().equalsIgnoreCase(name)) {
+					return policy;
+				}
+			}
+			throw new IllegalArgumentException("Unknown open list policy: " + name);
+		}
+	}
+}
\ No newline at end of file
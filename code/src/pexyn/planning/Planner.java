@@ -34,6 +34,25 @@ public interface Planner<StateType, ActionType> extends Searcher<StateType, Acti
 	public SearchResultType findPlan(StateType input, Predicate<StateType> goalTest,
 			Trace<StateType, ActionType> addToPlan);
 
+	/**
+	 * Returns a planner for a sequence of related searches, such as the
+	 * consecutive steps of a single example, which may reuse the work done by
+	 * earlier searches of the sequence. Planners that keep state between the
+	 * steps of a search return a new planner, so that sessions can run
+	 * concurrently in different threads.
+	 */
+	public default Planner<StateType, ActionType> newSession() {
+		return this;
+	}
+
+	/**
+	 * Releases the resources held by this planner, such as threads, once no
+	 * more searches will be performed with it, e.g., at the end of a session
+	 * (see {@link #newSession()}).
+	 */
+	public default void endSession() {
+	}
+
 	@Override
 	public default SearchResult<StateType> findState(StateType input, Predicate<StateType> goalTest) {
 		Trace<StateType, ActionType> plan = new ArrayListTrace<>(input);
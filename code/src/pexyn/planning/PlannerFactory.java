@@ -0,0 +1,151 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+
+import org.apache.commons.configuration2.Configuration;
+
+/**
+ * Creates planners according to the 'pexyn.planner' configuration key.
+ *
+ * @author romanm
+ */
+public class PlannerFactory {
+	/**
+	 * Creates a planner for the given transition relation, according to the value
+	 * of 'pexyn.planner':
+	 * <ul>
+	 * <li>astar (the default) selects {@link AStar}, or {@link IncrementalAStar}
+	 * if 'pexyn.planning.incremental' is set, which keeps up to
+	 * 'pexyn.planning.incremental.maxTransitions' transitions between the
+	 * searches of a session and requires exact duplicate detection.
+	 * <li>hda selects {@link HDAStar}, which uses 'pexyn.planning.threads'
+	 * threads (0 means one thread per available processor).
+	 * <li>ida selects the memory-bounded {@link IDAStar} with a transposition
+	 * table of 'pexyn.planning.transpositionTableSize' entries.
+	 * <li>anytime selects {@link AnytimeAStar}, configured by the
+	 * 'pexyn.planning.anytime.*' keys.
+	 * <li>greedy selects {@link GreedyBestFirst}, which finds plans quickly but
+	 * not necessarily optimal ones.
+	 * <li>beam selects {@link BeamSearch} with layers of
+	 * 'pexyn.planning.beamWidth' nodes, which falls back to {@link AStar} when the
+	 * beam misses all the goal states.
+	 * <li>portfolio selects a {@link PortfolioPlanner} that races the planners
+	 * listed in 'pexyn.planning.portfolio' (see
+	 * {@link #createPortfolioMember(String, TR, Configuration)}).
+	 * </ul>
+	 * The order of open nodes in astar and hda is given by
+	 * 'pexyn.planning.openList' (see {@link OpenList.Policy}), and the detection
+	 * of expanded states in astar by 'pexyn.planning.duplicateDetection' (see
+	 * {@link VisitedSet.Mode}) and 'pexyn.planning.bitstate.log2Bits', which also
+	 * apply to the fallback search of beam.
+	 */
+	public static <StateType, ActionType> Planner<StateType, ActionType> create(TR<StateType, ActionType> tr,
+			Configuration config) {
+		return create(config.getString("pexyn.planner", "astar"), tr, config);
+	}
+
+	/**
+	 * Creates a planner of the given kind, which is one of the values of
+	 * 'pexyn.planner', for the given transition relation.
+	 */
+	public static <StateType, ActionType> Planner<StateType, ActionType> create(String kind,
+			TR<StateType, ActionType> tr, Configuration config) {
+		var limits = SearchLimits.fromConfig(config);
+		var openListPolicy = OpenList.Policy.of(config.getString("pexyn.planning.openList", "fh"));
+		switch (kind) {
+		case "astar":
+			AStar<StateType, ActionType> astar;
+			var duplicateDetection = VisitedSet.Mode
+					.of(config.getString("pexyn.planning.duplicateDetection", "exact"));
+			if (config.getBoolean("pexyn.planning.incremental", false)) {
+				if (duplicateDetection != VisitedSet.Mode.EXACT) {
+					// The kept graph stores full states, which defeats the savings of
+					// fingerprints and bit-states.
+					throw new IllegalArgumentException(
+							"Incremental planning requires exact duplicate detection, but got " + duplicateDetection);
+				}
+				astar = new IncrementalAStar<>(tr, limits,
+						config.getInt("pexyn.planning.incremental.maxTransitions", 100000));
+			} else {
+				astar = new AStar<>(tr, limits);
+			}
+			astar.setOpenListPolicy(openListPolicy);
+			astar.setDuplicateDetection(duplicateDetection, config.getInt("pexyn.planning.bitstate.log2Bits", 27));
+			return astar;
+		case "hda":
+			int threads = config.getInt("pexyn.planning.threads", 0);
+			if (threads <= 0) {
+				threads = Runtime.getRuntime().availableProcessors();
+			}
+			var hda = new HDAStar<>(tr, limits, threads);
+			hda.setOpenListPolicy(openListPolicy);
+			return hda;
+		case "anytime":
+			return new AnytimeAStar<>(tr, limits, config.getFloat("pexyn.planning.anytime.initialWeight", 3),
+					config.getFloat("pexyn.planning.anytime.weightDecrement", 0.5f),
+					config.getBoolean("pexyn.planning.anytime.firstPlan", false));
+		case "ida":
+			return new IDAStar<>(tr, limits, config.getInt("pexyn.planning.transpositionTableSize", 1 << 16));
+		case "greedy":
+			return new GreedyBestFirst<>(tr, limits);
+		case "beam":
+			var beam = new BeamSearch<>(tr, limits, config.getInt("pexyn.planning.beamWidth", 100));
+			beam.setOpenListPolicy(openListPolicy);
+			beam.setDuplicateDetection(
+					VisitedSet.Mode.of(config.getString("pexyn.planning.duplicateDetection", "exact")),
+					config.getInt("pexyn.planning.bitstate.log2Bits", 27));
+			return beam;
+		case "portfolio":
+			var names = new ArrayList<String>();
+			var planners = new ArrayList<Planner<StateType, ActionType>>();
+			for (var name : config.getString("pexyn.planning.portfolio", "astar, weighted, greedy, bfs").split(",")) {
+				name = name.trim();
+				if (!name.isEmpty()) {
+					names.add(name);
+					planners.add(createPortfolioMember(name, tr, config));
+				}
+			}
+			if (planners.isEmpty()) {
+				throw new IllegalArgumentException("Empty planner portfolio!");
+			}
+			return new PortfolioPlanner<>(names, planners);
+		default:
+			throw new IllegalArgumentException("Unknown planner kind: " + kind);
+		}
+	}
+
+	/**
+	 * Creates a member of a planner portfolio, given by a kind optionally
+	 * followed by ':' and a seed, which makes the planner explore the successors
+	 * of each state in a pseudo-random order (see {@link ShuffledTR}). The kind
+	 * is either one of the values of 'pexyn.planner', except portfolio, or:
+	 * <ul>
+	 * <li>weighted, which selects weighted A* with the weight
+	 * 'pexyn.planning.anytime.initialWeight', i.e., {@link AnytimeAStar} that
+	 * returns its first plan.
+	 * <li>bfs, which selects breadth-first search, i.e., {@link BeamSearch} of
+	 * unbounded width.
+	 * </ul>
+	 */
+	public static <StateType, ActionType> Planner<StateType, ActionType> createPortfolioMember(String member,
+			TR<StateType, ActionType> tr, Configuration config) {
+		var kind = member;
+		int separator = member.indexOf(':');
+		if (separator >= 0) {
+			kind = member.substring(0, separator).trim();
+			tr = new ShuffledTR<>(tr, Long.parseLong(member.substring(separator + 1).trim()));
+		}
+		var limits = SearchLimits.fromConfig(config);
+		switch (kind) {
+		case "weighted":
+			return new AnytimeAStar<>(tr, limits, config.getFloat("pexyn.planning.anytime.initialWeight", 3),
+					config.getFloat("pexyn.planning.anytime.weightDecrement", 0.5f), true);
+		case "bfs":
+			return new BeamSearch<>(tr, limits, Integer.MAX_VALUE);
+		case "portfolio":
+			throw new IllegalArgumentException("A planner portfolio cannot contain a portfolio!");
+		default:
+			return create(kind, tr, config);
+		}
+	}
+}
\ No newline at end of file
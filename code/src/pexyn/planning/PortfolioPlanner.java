@@ -0,0 +1,264 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import pexyn.ArrayListTrace;
+import pexyn.Trace;
+
+/**
+ * A planner that runs a portfolio of planners concurrently, each on its own
+ * thread, and returns the result of the first one that either finds a plan or
+ * proves that no plan exists. The other planners are then cancelled
+ * cooperatively, by interrupting their threads (see {@link SearchLimits}).
+ * The search fails for lack of resources only if all the planners do. The
+ * searches of a session run on a thread pool owned by the session, which is
+ * shut down when the session ends (see {@link #endSession()}), and whose idle
+ * threads terminate after a while.<br>
+ * The number of searches won by each planner is counted across sessions and
+ * may be reported after each search, via a win listener, for tuning the
+ * portfolio.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class PortfolioPlanner<StateType, ActionType> implements Planner<StateType, ActionType> {
+	/**
+	 * The names of the planners, used for reporting.
+	 */
+	protected final List<String> names;
+
+	protected final List<Planner<StateType, ActionType>> planners;
+
+	/**
+	 * The number of searches won by each planner, shared by all sessions.
+	 */
+	protected final AtomicLongArray wins;
+
+	/**
+	 * Receives the name of the winning planner and its result after each
+	 * search, or null.
+	 */
+	protected BiConsumer<String, SearchResultType> winListener = null;
+
+	/**
+	 * The threads running the searches of this session, created on the first
+	 * search.
+	 */
+	private ThreadPoolExecutor pool = null;
+
+	private Optional<SearchStatistics> lastStatistics = Optional.empty();
+
+	/**
+	 * The number of seconds after which an idle thread of a session terminates.
+	 */
+	private static final long KEEP_ALIVE_SECONDS = 10;
+
+	/**
+	 * Constructs a portfolio of the given planners, with the given names.
+	 */
+	public PortfolioPlanner(List<String> names, List<? extends Planner<StateType, ActionType>> planners) {
+		this(names, planners, new AtomicLongArray(planners.size()));
+	}
+
+	protected PortfolioPlanner(List<String> names, List<? extends Planner<StateType, ActionType>> planners,
+			AtomicLongArray wins) {
+		assert !planners.isEmpty() && names.size() == planners.size();
+		this.names = List.copyOf(names);
+		this.planners = List.copyOf(planners);
+		this.wins = wins;
+	}
+
+	/**
+	 * Sets the listener that receives the name of the winning planner and its
+	 * result after each search.
+	 */
+	public void setWinListener(BiConsumer<String, SearchResultType> winListener) {
+		this.winListener = winListener;
+	}
+
+	@Override
+	public Planner<StateType, ActionType> newSession() {
+		var sessions = new ArrayList<Planner<StateType, ActionType>>(planners.size());
+		for (var planner : planners) {
+			sessions.add(planner.newSession());
+		}
+		var result = new PortfolioPlanner<>(names, sessions, wins);
+		result.setWinListener(winListener);
+		return result;
+	}
+
+	/**
+	 * The outcome of a search by one of the planners.
+	 */
+	private class Outcome {
+		public final int index;
+		public final SearchResultType result;
+		public final Trace<StateType, ActionType> plan;
+		public final Optional<SearchStatistics> statistics;
+
+		public Outcome(int index, SearchResultType result, Trace<StateType, ActionType> plan,
+				Optional<SearchStatistics> statistics) {
+			this.index = index;
+			this.result = result;
+			this.plan = plan;
+			this.statistics = statistics;
+		}
+	}
+
+	/**
+	 * The searches of the planners for a single goal. Cancelling the race
+	 * interrupts the searches that are running and makes the others return
+	 * immediately, so that the planners are idle once all the searches are
+	 * finished.
+	 */
+	private class Race {
+		private final Set<Thread> running = new HashSet<>();
+		private final Semaphore finished = new Semaphore(0);
+		private boolean cancelled = false;
+
+		public Outcome run(Callable<Outcome> search) throws Exception {
+			synchronized (this) {
+				if (cancelled) {
+					finished.release();
+					return null;
+				}
+				running.add(Thread.currentThread());
+			}
+			try {
+				return search.call();
+			} finally {
+				synchronized (this) {
+					running.remove(Thread.currentThread());
+				}
+				finished.release();
+			}
+		}
+
+		public synchronized void cancel() {
+			cancelled = true;
+			for (var thread : running) {
+				thread.interrupt();
+			}
+		}
+
+		public void awaitAll() {
+			finished.acquireUninterruptibly(planners.size());
+		}
+	}
+
+	@Override
+	public SearchResultType findPlan(StateType input, Predicate<StateType> goalTest,
+			Trace<StateType, ActionType> addToPlan) {
+		if (pool == null) {
+			pool = new ThreadPoolExecutor(planners.size(), planners.size(), KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), runnable -> {
+						var thread = new Thread(runnable, "portfolio");
+						thread.setDaemon(true);
+						return thread;
+					});
+			pool.allowCoreThreadTimeOut(true);
+		}
+		var race = new Race();
+		var completion = new ExecutorCompletionService<Outcome>(pool);
+		for (int i = 0; i < planners.size(); ++i) {
+			final int index = i;
+			completion.submit(() -> race.run(() -> {
+				var planner = planners.get(index);
+				Trace<StateType, ActionType> plan = new ArrayListTrace<>(input);
+				var result = planner.findPlan(input, goalTest, plan);
+				return new Outcome(index, result, plan, planner.lastStatistics());
+			}));
+		}
+
+		Outcome winner = null;
+		Outcome last = null;
+		try {
+			for (int i = 0; i < planners.size() && winner == null; ++i) {
+				last = completion.take().get();
+				if (last.result != SearchResultType.OUT_OF_RESOURCES) {
+					winner = last;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			var cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new Error(cause);
+		} finally {
+			// The planners are reused by the next search of this session.
+			race.cancel();
+			race.awaitAll();
+		}
+
+		if (winner == null) {
+			lastStatistics = last != null ? last.statistics : Optional.empty();
+			return SearchResultType.OUT_OF_RESOURCES;
+		}
+		wins.incrementAndGet(winner.index);
+		lastStatistics = winner.statistics;
+		if (winListener != null) {
+			winListener.accept(names.get(winner.index), winner.result);
+		}
+		if (winner.result == SearchResultType.OK) {
+			addToPlan.appendPlan(winner.plan);
+		}
+		return winner.result;
+	}
+
+	/**
+	 * Shuts down the thread pool of this session and ends the sessions of the
+	 * planners. A later search starts a new pool.
+	 */
+	@Override
+	public void endSession() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		for (var planner : planners) {
+			planner.endSession();
+		}
+	}
+
+	/**
+	 * Returns the number of searches won by each planner so far.
+	 */
+	public String winsSummary() {
+		var result = new StringBuilder();
+		for (int i = 0; i < names.size(); ++i) {
+			if (i > 0) {
+				result.append(", ");
+			}
+			result.append(names.get(i) + "=" + wins.get(i));
+		}
+		return result.toString();
+	}
+
+	@Override
+	public Optional<SearchStatistics> lastStatistics() {
+		return lastStatistics;
+	}
+}
\ No newline at end of file
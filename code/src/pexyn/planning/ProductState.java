@@ -0,0 +1,67 @@
+package pexyn.planning;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A tuple of states, one for each component of a {@link MultiProductTR}.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states of the components.
+ */
+public final class ProductState<StateType> {
+	private final Object[] components;
+	private final int hash;
+
+	/**
+	 * Constructs a tuple over the given array, which is not copied and should
+	 * not be changed afterwards.
+	 */
+	ProductState(Object[] components) {
+		this.components = components;
+		this.hash = Arrays.hashCode(components);
+	}
+
+	public static <StateType> ProductState<StateType> of(List<StateType> components) {
+		return new ProductState<>(components.toArray());
+	}
+
+	/**
+	 * Returns the number of components.
+	 */
+	public int size() {
+		return components.length;
+	}
+
+	/**
+	 * Returns the state of the given component.
+	 */
+	@SuppressWarnings("unchecked")
+	public StateType get(int i) {
+		return (StateType) components[i];
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof ProductState)) {
+			return false;
+		}
+		var other = (ProductState<?>) o;
+		return hash == other.hash && Arrays.equals(components, other.components);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(components);
+	}
+}
\ No newline at end of file
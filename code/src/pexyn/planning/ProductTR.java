@@ -2,11 +2,14 @@ package pexyn.planning;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 
 import bgu.cs.util.Pair;
 
 /**
  * The product of two transition relations ranging over the same set of actions.
+ * See {@link MultiProductTR} for the product of any number of relations.
  * 
  * @author romanm
  *
@@ -75,14 +78,37 @@ public class ProductTR<StateType1, StateType2, ActionType> implements TR<Pair<St
 		return costCombiner.combine(cost1, cost2);
 	}
 
+	/**
+	 * Pairs the transitions of both relations that take the same action, so
+	 * that each relation computes its successors once.
+	 */
+	@Override
+	public Collection<Transition<Pair<StateType1, StateType2>, ActionType>> successors(
+			Pair<StateType1, StateType2> state) {
+		var transitions2 = new HashMap<ActionType, List<Transition<StateType2, ActionType>>>();
+		for (var transition2 : tr2.successors(state.second)) {
+			transitions2.computeIfAbsent(transition2.action, k -> new ArrayList<>()).add(transition2);
+		}
+		var result = new ArrayList<Transition<Pair<StateType1, StateType2>, ActionType>>();
+		for (var transition1 : tr1.successors(state.first)) {
+			var matching = transitions2.get(transition1.action);
+			if (matching == null) {
+				continue;
+			}
+			for (var transition2 : matching) {
+				result.add(new Transition<>(transition1.action, new Pair<>(transition1.state, transition2.state),
+						costCombiner.combine(transition1.cost, transition2.cost)));
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public Collection<Pair<StateType1, StateType2>> apply(Pair<StateType1, StateType2> state, ActionType action) {
 		Collection<Pair<StateType1, StateType2>> result = new ArrayList<>();
-		for (ActionType outAction : enabledActions(state)) {
-			for (StateType1 dst1 : tr1.apply(state.first, outAction)) {
-				for (StateType2 dst2 : tr2.apply(state.second, outAction)) {
-					result.add(new Pair<>(dst1, dst2));
-				}
+		for (StateType1 dst1 : tr1.apply(state.first, action)) {
+			for (StateType2 dst2 : tr2.apply(state.second, action)) {
+				result.add(new Pair<>(dst1, dst2));
 			}
 		}
 		return result;
@@ -0,0 +1,112 @@
+package pexyn.planning;
+
+import org.apache.commons.configuration2.Configuration;
+
+/**
+ * Bounds on the resources that a single search may consume. A negative bound
+ * means that the corresponding resource is unbounded.<br>
+ * A search also stops when the thread running it is interrupted, which lets
+ * searches be cancelled cooperatively.
+ *
+ * @author romanm
+ */
+public class SearchLimits {
+	/**
+	 * Limits that never stop a search.
+	 */
+	public static final SearchLimits UNBOUNDED = new SearchLimits(-1, -1, -1, -1);
+
+	/**
+	 * The number of expansions between two consecutive checks of the used heap
+	 * memory, which are relatively expensive.
+	 */
+	private static final int HEAP_CHECK_PERIOD = 256;
+
+	private static final long BYTES_PER_MB = 1024 * 1024;
+
+	/**
+	 * The maximal number of nodes that may be expanded.
+	 */
+	public final long maxExpandedNodes;
+
+	/**
+	 * The maximal number of search nodes that may be alive at the same time.
+	 */
+	public final long maxLiveNodes;
+
+	/**
+	 * The maximal amount of used heap memory, in megabytes.
+	 */
+	public final long maxHeapMB;
+
+	/**
+	 * The maximal wall-clock time of a single search, in milliseconds.
+	 */
+	public final long timeoutMillis;
+
+	public SearchLimits(long maxExpandedNodes, long maxLiveNodes, long maxHeapMB, long timeoutMillis) {
+		this.maxExpandedNodes = maxExpandedNodes;
+		this.maxLiveNodes = maxLiveNodes;
+		this.maxHeapMB = maxHeapMB;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Reads the limits from the 'pexyn.planning.*' keys of the given
+	 * configuration.
+	 */
+	public static SearchLimits fromConfig(Configuration config) {
+		return new SearchLimits(config.getLong("pexyn.planning.maxExpandedNodes", -1),
+				config.getLong("pexyn.planning.maxLiveNodes", -1), config.getLong("pexyn.planning.maxHeapMB", -1),
+				config.getLong("pexyn.planning.timeoutSeconds", -1) * 1000);
+	}
+
+	/**
+	 * Tests whether the search described by the given statistics has exhausted
+	 * any of its resources.
+	 *
+	 * @param stats
+	 *            The statistics of an ongoing search.
+	 * @return The name of the exhausted resource or null if the search may
+	 *         continue.
+	 */
+	public String exhausted(SearchStatistics stats) {
+		return exhausted(stats.expandedNodes, stats.liveNodes, stats.elapsedMillis());
+	}
+
+	/**
+	 * Tests whether a search with the given resource consumption has exhausted
+	 * any of its resources.
+	 *
+	 * @return The name of the exhausted resource or null if the search may
+	 *         continue.
+	 */
+	public String exhausted(long expandedNodes, long liveNodes, long elapsedMillis) {
+		if (Thread.currentThread().isInterrupted()) {
+			return "cancellation";
+		}
+		if (maxExpandedNodes >= 0 && expandedNodes >= maxExpandedNodes) {
+			return "expanded nodes";
+		}
+		if (maxLiveNodes >= 0 && liveNodes >= maxLiveNodes) {
+			return "live nodes";
+		}
+		if (timeoutMillis >= 0 && elapsedMillis >= timeoutMillis) {
+			return "time";
+		}
+		if (maxHeapMB >= 0 && expandedNodes % HEAP_CHECK_PERIOD == 0) {
+			var runtime = Runtime.getRuntime();
+			var usedBytes = runtime.totalMemory() - runtime.freeMemory();
+			if (usedBytes >= maxHeapMB * BYTES_PER_MB) {
+				return "heap memory";
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "maxExpandedNodes=" + maxExpandedNodes + ", maxLiveNodes=" + maxLiveNodes + ", maxHeapMB=" + maxHeapMB
+				+ ", timeoutMillis=" + timeoutMillis;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,280 @@
+package pexyn.planning;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * Statistics gathered during a single search.
+ *
+ * @author romanm
+ */
+public class SearchStatistics {
+	/**
+	 * The number of nodes whose successors were generated.
+	 */
+	public long expandedNodes = 0;
+
+	/**
+	 * The number of expansions of states that had already been expanded before,
+	 * by algorithms that do not keep all expanded states.
+	 */
+	public long reexpandedNodes = 0;
+
+	/**
+	 * The number of expansions whose successors were taken from a search graph
+	 * kept from earlier searches, rather than recomputed.
+	 */
+	public long reusedExpansions = 0;
+
+	/**
+	 * The number of outdated open-list entries that were skipped, i.e., entries
+	 * of nodes that had already been expanded or reached via cheaper paths, or,
+	 * for {@link BeamSearch}, which never queues a state twice, the number of
+	 * successors discarded since their states had already been generated.
+	 */
+	public long duplicatePops = 0;
+
+	/**
+	 * The number of actions that the search never tried, since they are
+	 * irrelevant for its goal (see {@link TR#prunedActions()}).
+	 */
+	public long prunedActions = 0;
+
+	/**
+	 * The number of successor nodes generated.
+	 */
+	public long generatedNodes = 0;
+
+	/**
+	 * The number of search nodes that are currently alive.
+	 */
+	public long liveNodes = 0;
+
+	/**
+	 * The maximal size of the open list during the search.
+	 */
+	public long maxOpenSize = 0;
+
+	/**
+	 * The time spent computing heuristic estimates, in nanoseconds.
+	 */
+	public long heuristicNanos = 0;
+
+	/**
+	 * The time spent computing the successors of expanded states, in
+	 * nanoseconds. Successors that a transition relation generates lazily are
+	 * counted only as far as they are computed before they are returned.
+	 */
+	public long successorNanos = 0;
+
+	/**
+	 * The number of actions in the plan found by the search, or -1 if no plan
+	 * was found.
+	 */
+	public int planLength = -1;
+
+	/**
+	 * A description of the inexact detection of visited states used by the
+	 * search, or null if visited states were detected exactly.
+	 */
+	public String duplicateDetection = null;
+
+	/**
+	 * An estimate of the probability that the search mistook a new state for a
+	 * visited one, when visited states were not detected exactly.
+	 */
+	public double collisionProbability = 0;
+
+	/**
+	 * The result of the search, or null if the search has not finished.
+	 */
+	public SearchResultType result = null;
+
+	/**
+	 * The name of the resource whose exhaustion stopped the search, or null if
+	 * the search was not stopped by a resource bound.
+	 */
+	public String exhaustedResource = null;
+
+	private long startTime;
+	private long stopTime = -1;
+
+	/**
+	 * Marks the beginning of the search.
+	 */
+	public void start() {
+		startTime = System.nanoTime();
+		stopTime = -1;
+	}
+
+	/**
+	 * Marks the end of the search with the given result.
+	 */
+	public void stop(SearchResultType result) {
+		this.result = result;
+		stopTime = System.nanoTime();
+	}
+
+	/**
+	 * Returns the wall-clock time since the start of the search, or the duration
+	 * of the search if it has already stopped.
+	 */
+	public long elapsedMillis() {
+		long end = stopTime >= 0 ? stopTime : System.nanoTime();
+		return (end - startTime) / 1000000;
+	}
+
+	/**
+	 * Returns the successors of the given state, accounting for the time it
+	 * takes to compute them.
+	 */
+	public <StateType, ActionType> Collection<Transition<StateType, ActionType>> timedSuccessors(
+			TR<StateType, ActionType> tr, StateType state) {
+		long start = System.nanoTime();
+		var result = tr.successors(state);
+		successorNanos += System.nanoTime() - start;
+		return result;
+	}
+
+	/**
+	 * Returns an iterator of the successors of the given state (see
+	 * {@link TR#successorsIterator(Object)}), accounting for the time it takes
+	 * to compute them as they are iterated.
+	 */
+	public <StateType, ActionType> Iterator<Transition<StateType, ActionType>> timedSuccessorsIterator(
+			TR<StateType, ActionType> tr, StateType state) {
+		long start = System.nanoTime();
+		var successors = tr.successorsIterator(state);
+		successorNanos += System.nanoTime() - start;
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				long start = System.nanoTime();
+				boolean result = successors.hasNext();
+				successorNanos += System.nanoTime() - start;
+				return result;
+			}
+
+			@Override
+			public Transition<StateType, ActionType> next() {
+				long start = System.nanoTime();
+				var result = successors.next();
+				successorNanos += System.nanoTime() - start;
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Returns the relation specialized for the given goal, accounting for the
+	 * actions it prunes.
+	 */
+	public <StateType, ActionType> TR<StateType, ActionType> forGoal(TR<StateType, ActionType> tr,
+			Predicate<StateType> goalTest) {
+		var result = tr.forGoal(goalTest);
+		prunedActions = result.prunedActions();
+		return result;
+	}
+
+	/**
+	 * Returns the heuristic estimate of the given state, accounting for the time
+	 * it takes to compute it.
+	 */
+	public <StateType> float timedEstimate(TR<StateType, ?> tr, StateType state) {
+		long start = System.nanoTime();
+		float result = tr.estimateDistToGoal(state);
+		heuristicNanos += System.nanoTime() - start;
+		return result;
+	}
+
+	/**
+	 * Adds the counts of an earlier search, which this search continues, and
+	 * extends the elapsed time to include it.
+	 */
+	public void addEarlier(SearchStatistics earlier) {
+		expandedNodes += earlier.expandedNodes;
+		reexpandedNodes += earlier.reexpandedNodes;
+		reusedExpansions += earlier.reusedExpansions;
+		duplicatePops += earlier.duplicatePops;
+		generatedNodes += earlier.generatedNodes;
+		heuristicNanos += earlier.heuristicNanos;
+		successorNanos += earlier.successorNanos;
+		updateOpenSize(earlier.maxOpenSize);
+		startTime = Math.min(startTime, earlier.startTime);
+	}
+
+	/**
+	 * Returns the effective branching factor of the search, i.e., the branching
+	 * factor b of a uniform tree of the depth of the plan with as many nodes as
+	 * the search generated: 1+generated = 1+b+b^2+...+b^depth. Returns 0 if the
+	 * search found no plan or the plan is empty.
+	 */
+	public double effectiveBranchingFactor() {
+		if (planLength <= 0) {
+			return 0;
+		}
+		double low = 0;
+		double high = Math.max(1, generatedNodes);
+		for (int i = 0; i < 64; ++i) {
+			double mid = (low + high) / 2;
+			if (treeSize(mid, planLength) < generatedNodes) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Returns b+b^2+...+b^depth.
+	 */
+	private static double treeSize(double branching, int depth) {
+		double result = 0;
+		double level = 1;
+		for (int i = 0; i < depth; ++i) {
+			level *= branching;
+			result += level;
+		}
+		return result;
+	}
+
+	public void updateOpenSize(long openSize) {
+		if (openSize > maxOpenSize) {
+			maxOpenSize = openSize;
+		}
+	}
+
+	@Override
+	public String toString() {
+		var result = new StringBuilder();
+		result.append("expanded=" + expandedNodes);
+		if (reexpandedNodes > 0) {
+			result.append(", reexpanded=" + reexpandedNodes);
+		}
+		if (reusedExpansions > 0) {
+			result.append(", reused=" + reusedExpansions);
+		}
+		result.append(", generated=" + generatedNodes);
+		if (prunedActions > 0) {
+			result.append(", pruned=" + prunedActions);
+		}
+		if (duplicatePops > 0) {
+			result.append(", duplicatePops=" + duplicatePops);
+		}
+		result.append(", live=" + liveNodes);
+		result.append(", maxOpen=" + maxOpenSize);
+		result.append(", time=" + elapsedMillis() + "ms");
+		if (planLength > 0) {
+			result.append(String.format(", branching=%.2f", effectiveBranchingFactor()));
+		}
+		if (duplicateDetection != null) {
+			result.append(", " + duplicateDetection + " (collision probability " + collisionProbability + ")");
+		}
+		if (exhaustedResource != null) {
+			result.append(", exhausted " + exhaustedResource);
+		}
+		return result.toString();
+	}
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package pexyn.planning;
 
+import java.util.Optional;
 import java.util.function.Predicate;
 
 /**
@@ -76,4 +77,12 @@ public interface Searcher<StateType, ActionType> {
 	 * @return The result of the search.
 	 */
 	public SearchResult<StateType> findState(StateType input, Predicate<StateType> goalTest);
+
+	/**
+	 * Returns the statistics of the most recent search, if the algorithm gathers
+	 * any.
+	 */
+	public default Optional<SearchStatistics> lastStatistics() {
+		return Optional.empty();
+	}
 }
\ No newline at end of file
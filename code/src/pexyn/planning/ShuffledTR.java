@@ -0,0 +1,101 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * A view of a transition relation that presents the enabled actions and the
+ * successors of each state in a pseudo-random order, which is determined by a
+ * seed and the state. Searches that break ties by the order of generation thus
+ * explore the states in a different order than over the original relation.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class ShuffledTR<StateType, ActionType> implements TR<StateType, ActionType> {
+	protected final TR<StateType, ActionType> tr;
+	protected final long seed;
+
+	public ShuffledTR(TR<StateType, ActionType> tr, long seed) {
+		this.tr = tr;
+		this.seed = seed;
+	}
+
+	@Override
+	public Collection<ActionType> enabledActions(StateType state) {
+		return shuffle(tr.enabledActions(state), state);
+	}
+
+	@Override
+	public Collection<ActionType> candidateActions(StateType state) {
+		return shuffle(tr.candidateActions(state), state);
+	}
+
+	@Override
+	public Collection<Transition<StateType, ActionType>> transitions(StateType state,
+			Collection<ActionType> actions) {
+		return tr.transitions(state, actions);
+	}
+
+	@Override
+	public Collection<ActionType> relevantActions(StateType state, Collection<ActionType> enabled) {
+		return tr.relevantActions(state, enabled);
+	}
+
+	@Override
+	public float transitionCost(StateType src, ActionType action, StateType dst) {
+		return tr.transitionCost(src, action, dst);
+	}
+
+	@Override
+	public Collection<StateType> apply(StateType state, ActionType action) {
+		return tr.apply(state, action);
+	}
+
+	@Override
+	public Collection<Transition<StateType, ActionType>> successors(StateType state) {
+		return shuffle(tr.successors(state), state);
+	}
+
+	@Override
+	public float actionCost(StateType src, ActionType action) {
+		return tr.actionCost(src, action);
+	}
+
+	@Override
+	public float estimateDistToGoal(StateType state) {
+		return tr.estimateDistToGoal(state);
+	}
+
+	@Override
+	public long fingerprint(StateType state, long seed) {
+		return tr.fingerprint(state, seed);
+	}
+
+	@Override
+	public TR<StateType, ActionType> forGoal(Predicate<StateType> goalTest) {
+		var goalTR = tr.forGoal(goalTest);
+		return goalTR == tr ? this : new ShuffledTR<>(goalTR, seed);
+	}
+
+	@Override
+	public int prunedActions() {
+		return tr.prunedActions();
+	}
+
+	private <T> Collection<T> shuffle(Collection<T> collection, StateType state) {
+		if (collection.size() <= 1) {
+			return collection;
+		}
+		var result = new ArrayList<T>(collection);
+		Collections.shuffle(result, new Random(seed * 0x9e3779b97f4a7c15L + state.hashCode()));
+		return result;
+	}
+}
\ No newline at end of file
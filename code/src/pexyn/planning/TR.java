@@ -1,7 +1,12 @@
 package pexyn.planning;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * A non-deterministic transition relation with a positive weight associated
@@ -32,6 +37,51 @@ public interface TR<StateType, ActionType> {
 		return enabledActions(state).iterator();
 	}
 
+	/**
+	 * Returns the subset of the given enabled actions of the given state that a
+	 * search should consider, e.g., after a partial-order reduction. The
+	 * {@link #enabledActions(Object)} of a relation that reduces actions are
+	 * already reduced; this method lets wrappers that obtain the enabled actions
+	 * elsewhere apply the same reduction. The default implementation returns all
+	 * the given actions.
+	 */
+	public default Collection<ActionType> relevantActions(StateType state, Collection<ActionType> enabled) {
+		return enabled;
+	}
+
+	/**
+	 * Returns the actions that a search should try to apply to the given state,
+	 * some of which may be disabled, before they are reduced by
+	 * {@link #relevantActions(Object, Collection)}. Lets wrappers that keep
+	 * transitions per action compute only the transitions of these actions. The
+	 * default implementation returns the enabled actions.
+	 */
+	public default Collection<ActionType> candidateActions(StateType state) {
+		return enabledActions(state);
+	}
+
+	/**
+	 * Returns the transitions from the given state by the enabled actions among
+	 * the given candidate actions, in the order of the actions. The default
+	 * implementation combines {@link #enabledActions(Object)},
+	 * {@link #apply(Object, Object)}, and
+	 * {@link #transitionCost(Object, Object, Object)}.
+	 */
+	public default Collection<Transition<StateType, ActionType>> transitions(StateType state,
+			Collection<ActionType> actions) {
+		Set<ActionType> enabled = Collections.newSetFromMap(new IdentityHashMap<>());
+		enabled.addAll(enabledActions(state));
+		var result = new ArrayList<Transition<StateType, ActionType>>();
+		for (ActionType action : actions) {
+			if (enabled.contains(action)) {
+				for (StateType next : apply(state, action)) {
+					result.add(new Transition<>(action, next, transitionCost(state, action, next)));
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Returns the cost of taking the transition from the source state to the
 	 * destination state with the given action.
@@ -44,6 +94,35 @@ public interface TR<StateType, ActionType> {
 	 */
 	public Collection<StateType> apply(StateType state, ActionType action);
 
+	/**
+	 * Returns the transitions from the given state, i.e., the enabled actions
+	 * along with the states they result in and the costs of the transitions.
+	 * Relations that compute the enabled actions by applying them should
+	 * override this method to apply each action once. The default implementation
+	 * combines {@link #enabledActions(Object)}, {@link #apply(Object, Object)},
+	 * and {@link #transitionCost(Object, Object, Object)}.
+	 */
+	public default Collection<Transition<StateType, ActionType>> successors(StateType state) {
+		var result = new ArrayList<Transition<StateType, ActionType>>();
+		for (ActionType action : enabledActions(state)) {
+			for (StateType next : apply(state, action)) {
+				result.add(new Transition<>(action, next, transitionCost(state, action, next)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns an iterator of the transitions of {@link #successors(Object)}.
+	 * Relations that compute each transition separately should override this
+	 * method to compute the transitions as they are iterated, so that searches
+	 * that stop at the first goal, or keep the successors of every node on
+	 * their path, do not compute all of them in advance.
+	 */
+	public default Iterator<Transition<StateType, ActionType>> successorsIterator(StateType state) {
+		return successors(state).iterator();
+	}
+
 	/**
 	 * Returns the maximal cost of taking a transition from the source state to any
 	 * destination state with the given action.
@@ -63,4 +142,37 @@ public interface TR<StateType, ActionType> {
 	public default float estimateDistToGoal(StateType state) {
 		return 0;
 	}
+
+	/**
+	 * Returns a 64-bit hash of the given state from a family of hash functions
+	 * indexed by the given seed, such that equal states have equal hashes. Used
+	 * to detect visited states without keeping them.<br>
+	 * The default implementation is based on {@link Object#hashCode()}, and
+	 * therefore distinguishes at most 2^32 states; transition relations over
+	 * large state spaces should override it.
+	 */
+	public default long fingerprint(StateType state, long seed) {
+		long z = seed + state.hashCode() * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns a transition relation with the same transitions, which is
+	 * specialized for searching states satisfying the given goal, e.g., by a more
+	 * informed {@link #estimateDistToGoal(Object)}.
+	 */
+	public default TR<StateType, ActionType> forGoal(Predicate<StateType> goalTest) {
+		return this;
+	}
+
+	/**
+	 * Returns the number of actions that this relation never tries, e.g.,
+	 * because a relation specialized by {@link #forGoal(Predicate)} found them
+	 * irrelevant for its goal. The default implementation returns 0.
+	 */
+	public default int prunedActions() {
+		return 0;
+	}
 }
\ No newline at end of file
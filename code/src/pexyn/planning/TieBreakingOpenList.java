@@ -0,0 +1,76 @@
+package pexyn.planning;
+
+import java.util.PriorityQueue;
+
+import pexyn.planning.AStar.Node;
+
+/**
+ * An open list that orders nodes by their f-scores and breaks ties in favor of
+ * nodes with lower heuristic estimates (equivalently, higher g-scores), and
+ * then in favor of the most recently added nodes. With many nodes sharing the
+ * optimal f-score, this directs the search towards the goal rather than
+ * expanding the whole f-layer.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class TieBreakingOpenList<StateType, ActionType> implements OpenList<StateType, ActionType> {
+	private final PriorityQueue<Entry<StateType, ActionType>> queue = new PriorityQueue<>();
+	private long addCounter = 0;
+	private long duplicatePops = 0;
+
+	@Override
+	public void add(Node<StateType, ActionType> node) {
+		queue.add(new Entry<>(node, addCounter++));
+	}
+
+	@Override
+	public Node<StateType, ActionType> poll() {
+		Entry<StateType, ActionType> entry;
+		while ((entry = queue.poll()) != null) {
+			if (entry.isCurrent()) {
+				return entry.node;
+			}
+			++duplicatePops;
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public long duplicatePops() {
+		return duplicatePops;
+	}
+
+	private static class Entry<StateType, ActionType> extends BucketOpenList.Entry<StateType, ActionType>
+			implements Comparable<Entry<StateType, ActionType>> {
+		public final float hscore;
+		public final long order;
+
+		public Entry(Node<StateType, ActionType> node, long order) {
+			super(node);
+			this.hscore = node.fscore - node.gscore;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Entry<StateType, ActionType> other) {
+			int result = Float.compare(fscore, other.fscore);
+			if (result == 0) {
+				result = Float.compare(hscore, other.hscore);
+			}
+			if (result == 0) {
+				result = Long.compare(other.order, order);
+			}
+			return result;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package pexyn.planning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A transition from a given state: the action taken, the resulting state, and
+ * the cost of the transition.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ * @param <ActionType>
+ *            The type of actions in the transition relation.
+ */
+public class Transition<StateType, ActionType> {
+	public final ActionType action;
+	public final StateType state;
+	public final float cost;
+
+	public Transition(ActionType action, StateType state, float cost) {
+		this.action = action;
+		this.state = state;
+		this.cost = cost;
+	}
+
+	/**
+	 * Returns the actions of the given transitions, in order and without
+	 * repetitions, assuming that the transitions of each action are listed
+	 * consecutively.
+	 */
+	public static <StateType, ActionType> Collection<ActionType> actions(
+			Collection<Transition<StateType, ActionType>> transitions) {
+		var result = new ArrayList<ActionType>(transitions.size());
+		ActionType last = null;
+		for (var transition : transitions) {
+			if (transition.action != last) {
+				result.add(transition.action);
+				last = transition.action;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the given transitions whose actions are among the given actions,
+	 * or the given transitions if all of them are.
+	 */
+	public static <StateType, ActionType> Collection<Transition<StateType, ActionType>> restrict(
+			Collection<Transition<StateType, ActionType>> transitions, Collection<ActionType> actions) {
+		Set<ActionType> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+		kept.addAll(actions);
+		var result = new ArrayList<Transition<StateType, ActionType>>(transitions.size());
+		for (var transition : transitions) {
+			if (kept.contains(transition.action)) {
+				result.add(transition);
+			}
+		}
+		return result.size() == transitions.size() ? transitions : result;
+	}
+
+	@Override
+	public String toString() {
+		return action + " -> " + state + " (" + cost + ")";
+	}
+}
\ No newline at end of file
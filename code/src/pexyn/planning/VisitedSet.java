@@ -0,0 +1,117 @@
+package pexyn.planning;
+
+/**
+ * A set of visited states that keeps only hashes of the states, obtained via
+ * {@link TR#fingerprint(Object, long)}. Distinct states with equal hashes are
+ * mistaken for one another, so a search using such a set may miss states,
+ * with a probability reported by {@link #collisionProbability()}.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The type of states in the state space.
+ */
+public abstract class VisitedSet<StateType> {
+	/**
+	 * The ways of detecting states that were already visited.
+	 */
+	public static enum Mode {
+		/**
+		 * Keeps the visited states themselves.
+		 */
+		EXACT,
+
+		/**
+		 * Keeps a 64-bit fingerprint per state.
+		 */
+		FP64,
+
+		/**
+		 * Keeps a 128-bit fingerprint per state.
+		 */
+		FP128,
+
+		/**
+		 * Sets a few bits per state in a fixed-size bit array (a Bloom filter),
+		 * like the bitstate hashing of SPIN.
+		 */
+		BITSTATE;
+
+		/**
+		 * Creates a set for this mode, or returns null for {@link #EXACT}.
+		 *
+		 * @param log2Bits
+		 *            The base-2 logarithm of the size of the bit array of
+		 *            {@link #BITSTATE}.
+		 */
+		public <StateType> VisitedSet<StateType> create(TR<StateType, ?> tr, int log2Bits) {
+			switch (this) {
+			case EXACT:
+				return null;
+			case FP64:
+				return new FingerprintSet<>(tr, false);
+			case FP128:
+				return new FingerprintSet<>(tr, true);
+			case BITSTATE:
+				return new BitstateSet<>(tr, log2Bits);
+			default:
+				throw new Error("Unexpected duplicate detection mode: " + this);
+			}
+		}
+
+		/**
+		 * Returns the mode with the given name, ignoring case.
+		 */
+		public static Mode of(String name) {
+			for (var mode : values()) {
+				if (mode.name().equalsIgnoreCase(name)) {
+					return mode;
+				}
+			}
+			throw new IllegalArgumentException("Unknown duplicate detection mode: " + name);
+		}
+	}
+
+	protected final TR<StateType, ?> tr;
+
+	protected VisitedSet(TR<StateType, ?> tr) {
+		this.tr = tr;
+	}
+
+	/**
+	 * Adds the given state to the set.
+	 */
+	public abstract void add(StateType state);
+
+	/**
+	 * Checks whether the given state, or a state with the same hashes, has been
+	 * added to the set.
+	 */
+	public abstract boolean contains(StateType state);
+
+	/**
+	 * Returns the number of states added to the set.
+	 */
+	public abstract long size();
+
+	/**
+	 * Returns an estimate of the probability that some state has been mistaken
+	 * for a visited one.
+	 */
+	public abstract double collisionProbability();
+
+	/**
+	 * Returns a short description of the set, e.g., for logging.
+	 */
+	public abstract String describe();
+
+	/**
+	 * The finalizer of the SplitMix64 generator, used to derive independent
+	 * hashes from a fingerprint.
+	 */
+	protected static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
\ No newline at end of file